@@ -7,6 +7,15 @@ CREATE DATABASE cookbook CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci;
 USE cookbook;
 
 -- define tables, indices, etc.
+-- identities are allocated in blocks by the persistence provider, using table IdentitySequence; the auto-increment
+-- of BaseEntity is merely used by scripts, which must therefore reseed the sequence after inserting entities
+CREATE TABLE IdentitySequence (
+	name VARCHAR(63) NOT NULL,
+	nextValue BIGINT NOT NULL,
+	PRIMARY KEY (name)
+);
+INSERT INTO IdentitySequence VALUES ("BaseEntity", 0);
+
 CREATE TABLE BaseEntity (
 	identity BIGINT NOT NULL AUTO_INCREMENT,
 	discriminator ENUM("Document", "Person", "Recipe", "IngredientType", "Ingredient") NOT NULL,
@@ -21,7 +30,8 @@ CREATE TABLE Document (
 	documentIdentity BIGINT NOT NULL,
 	hash CHAR(64) NOT NULL,
 	type VARCHAR(63) NOT NULL,
-	content LONGBLOB NOT NULL,
+	size BIGINT NOT NULL,
+	content LONGBLOB NULL,
 	PRIMARY KEY (documentIdentity),
 	FOREIGN KEY (documentIdentity) REFERENCES BaseEntity (identity) ON DELETE CASCADE ON UPDATE CASCADE,
 	UNIQUE KEY (hash)
@@ -31,7 +41,7 @@ CREATE TABLE Person (
 	personIdentity BIGINT NOT NULL,
 	avatarReference BIGINT NOT NULL,
 	email CHAR(128) NOT NULL,
-	passwordHash CHAR(64) NOT NULL,
+	passwordHash VARCHAR(128) NOT NULL,
 	groupAlias ENUM("USER", "ADMIN") NOT NULL,
 	title VARCHAR(15) NULL,
 	surname VARCHAR(31) NOT NULL,
@@ -54,11 +64,20 @@ CREATE TABLE Recipe (
 	title CHAR(128) NOT NULL,
 	description VARCHAR(4094) NULL,
 	instruction VARCHAR(4094) NULL,
+	pescatarian BOOLEAN NOT NULL,
+	lactoOvoVegetarian BOOLEAN NOT NULL,
+	lactoVegetarian BOOLEAN NOT NULL,
+	vegan BOOLEAN NOT NULL,
 	PRIMARY KEY (recipeIdentity),
 	FOREIGN KEY (recipeIdentity) REFERENCES BaseEntity (identity) ON DELETE CASCADE ON UPDATE CASCADE,
 	FOREIGN KEY (avatarReference) REFERENCES Document (documentIdentity) ON DELETE RESTRICT ON UPDATE CASCADE,
 	FOREIGN KEY (ownerReference) REFERENCES Person (personIdentity) ON DELETE SET NULL ON UPDATE CASCADE,
-	UNIQUE KEY (title)
+	UNIQUE KEY (title),
+	KEY (pescatarian),
+	KEY (lactoOvoVegetarian),
+	KEY (lactoVegetarian),
+	KEY (vegan),
+	FULLTEXT KEY (title, description, instruction)
 );
 
 CREATE TABLE IngredientType (
@@ -73,7 +92,8 @@ CREATE TABLE IngredientType (
 	PRIMARY KEY (ingredientTypeIdentity),
 	FOREIGN KEY (ingredientTypeIdentity) REFERENCES BaseEntity (identity) ON DELETE CASCADE ON UPDATE CASCADE,
 	FOREIGN KEY (avatarReference) REFERENCES Document (documentIdentity) ON DELETE RESTRICT ON UPDATE CASCADE,
-	UNIQUE KEY (alias)
+	UNIQUE KEY (alias),
+	FULLTEXT KEY (alias, description)
 );
 
 CREATE TABLE Ingredient (
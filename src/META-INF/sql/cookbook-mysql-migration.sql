@@ -0,0 +1,87 @@
+-- MySQL migration script for schema "cookbook", migrating existing databases created by an earlier
+-- version of the definition script to the current one; every step is skipped once it has been applied,
+-- which allows the script to be run repeatedly
+-- best import using client command "source <path to this file>"
+
+SET CHARACTER SET utf8mb4;
+USE cookbook;
+
+-- identities are allocated using table IdentitySequence instead of auto-increment
+CREATE TABLE IF NOT EXISTS IdentitySequence (
+	name VARCHAR(63) NOT NULL,
+	nextValue BIGINT NOT NULL,
+	PRIMARY KEY (name)
+);
+
+-- the sequence is only seeded if it is missing, as it may already have allocated identity blocks beyond the maximum
+INSERT INTO IdentitySequence (name, nextValue)
+	SELECT "BaseEntity", m.maxIdentity FROM (SELECT COALESCE(MAX(identity), 0) AS maxIdentity FROM BaseEntity) AS m
+	WHERE NOT EXISTS (SELECT * FROM IdentitySequence WHERE name = "BaseEntity");
+
+-- recipes carry indexed diet flags derived from their ingredients; skipped if the flags already exist
+SET @migrate = NOT EXISTS (SELECT * FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = "cookbook" AND TABLE_NAME = "Recipe" AND COLUMN_NAME = "vegan");
+
+SET @statement = IF(@migrate, "ALTER TABLE Recipe
+	ADD COLUMN pescatarian BOOLEAN NULL,
+	ADD COLUMN lactoOvoVegetarian BOOLEAN NULL,
+	ADD COLUMN lactoVegetarian BOOLEAN NULL,
+	ADD COLUMN vegan BOOLEAN NULL", "DO 0");
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = IF(@migrate, "UPDATE Recipe AS r SET
+	r.pescatarian = NOT EXISTS (SELECT * FROM Ingredient AS i JOIN IngredientType AS t ON t.ingredientTypeIdentity = i.typeReference WHERE i.recipeReference = r.recipeIdentity AND NOT t.pescatarian),
+	r.lactoOvoVegetarian = NOT EXISTS (SELECT * FROM Ingredient AS i JOIN IngredientType AS t ON t.ingredientTypeIdentity = i.typeReference WHERE i.recipeReference = r.recipeIdentity AND NOT t.lactoOvoVegetarian),
+	r.lactoVegetarian = NOT EXISTS (SELECT * FROM Ingredient AS i JOIN IngredientType AS t ON t.ingredientTypeIdentity = i.typeReference WHERE i.recipeReference = r.recipeIdentity AND NOT t.lactoVegetarian),
+	r.vegan = NOT EXISTS (SELECT * FROM Ingredient AS i JOIN IngredientType AS t ON t.ingredientTypeIdentity = i.typeReference WHERE i.recipeReference = r.recipeIdentity AND NOT t.vegan)", "DO 0");
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = IF(@migrate, "ALTER TABLE Recipe
+	MODIFY COLUMN pescatarian BOOLEAN NOT NULL,
+	MODIFY COLUMN lactoOvoVegetarian BOOLEAN NOT NULL,
+	MODIFY COLUMN lactoVegetarian BOOLEAN NOT NULL,
+	MODIFY COLUMN vegan BOOLEAN NOT NULL,
+	ADD KEY (pescatarian),
+	ADD KEY (lactoOvoVegetarian),
+	ADD KEY (lactoVegetarian),
+	ADD KEY (vegan)", "DO 0");
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+-- recipes and ingredient types are searchable using full-text indexes; skipped for tables that already have one
+SET @statement = IF(EXISTS (SELECT * FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = "cookbook" AND TABLE_NAME = "Recipe" AND INDEX_TYPE = "FULLTEXT"),
+	"DO 0", "ALTER TABLE Recipe ADD FULLTEXT KEY (title, description, instruction)");
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = IF(EXISTS (SELECT * FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = "cookbook" AND TABLE_NAME = "IngredientType" AND INDEX_TYPE = "FULLTEXT"),
+	"DO 0", "ALTER TABLE IngredientType ADD FULLTEXT KEY (alias, description)");
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+-- document content sizes are stored separately, and content may reside in an external blob directory; skipped if the
+-- sizes already exist, as the content of documents kept in a blob directory would otherwise be considered empty
+SET @migrate = NOT EXISTS (SELECT * FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = "cookbook" AND TABLE_NAME = "Document" AND COLUMN_NAME = "size");
+
+SET @statement = IF(@migrate, "ALTER TABLE Document
+	ADD COLUMN size BIGINT NULL AFTER type,
+	MODIFY COLUMN content LONGBLOB NULL", "DO 0");
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = IF(@migrate, "UPDATE Document SET size = COALESCE(LENGTH(content), 0)", "DO 0");
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+ALTER TABLE Document MODIFY COLUMN size BIGINT NOT NULL;
+
+-- password hashes are salted PBKDF2 hashes, legacy SHA-256 hashes are upgraded on login
+ALTER TABLE Person MODIFY COLUMN passwordHash VARCHAR(128) NOT NULL;
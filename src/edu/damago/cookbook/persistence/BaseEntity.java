@@ -11,6 +11,7 @@ import javax.persistence.Index;
 import javax.persistence.Inheritance;
 import javax.persistence.InheritanceType;
 import javax.persistence.Table;
+import javax.persistence.TableGenerator;
 import javax.validation.constraints.Positive;
 import edu.damago.tool.Copyright;
 import edu.damago.tool.JsonProtectedPropertyStrategy;
@@ -19,7 +20,9 @@ import edu.damago.tool.JsonProtectedPropertyStrategy;
 /**
  * This abstract class defines entities as the root of an inheritance tree. Having a common root entity class allows for the
  * unique generation of primary keys across all subclasses, and additionally for both polymorphic relationships and polymorphic
- * queries.
+ * queries. Primary keys are allocated from table {@code IdentitySequence} in blocks of {@value #IDENTITY_ALLOCATION_SIZE},
+ * which avoids having to insert every new entity immediately in order to obtain its auto-incremented key, and therefore
+ * allows inserts to be batched.
  */
 @Entity
 @Table(schema = "cookbook", name = "BaseEntity", indexes = @Index(columnList = "discriminator"))
@@ -28,9 +31,11 @@ import edu.damago.tool.JsonProtectedPropertyStrategy;
 @JsonbVisibility(JsonProtectedPropertyStrategy.class)
 @Copyright(year = 2012, holders = "Sascha Baumeister")
 public abstract class BaseEntity implements Comparable<BaseEntity> {
+	static private final int IDENTITY_ALLOCATION_SIZE = 50;
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.TABLE, generator = "IdentitySequence")
+	@TableGenerator(name = "IdentitySequence", schema = "cookbook", table = "IdentitySequence", pkColumnName = "name", valueColumnName = "nextValue", pkColumnValue = "BaseEntity", allocationSize = IDENTITY_ALLOCATION_SIZE)
 	private long identity;
 
 	@Positive
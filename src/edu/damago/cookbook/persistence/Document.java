@@ -1,13 +1,14 @@
 package edu.damago.cookbook.persistence;
 
-import javax.json.bind.annotation.JsonbTransient;
 import javax.json.bind.annotation.JsonbVisibility;
 import javax.persistence.Column;
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
 import javax.persistence.PrimaryKeyJoinColumn;
 import javax.persistence.Table;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.PositiveOrZero;
 import javax.validation.constraints.Size;
 import org.eclipse.persistence.annotations.CacheIndex;
 import edu.damago.tool.Copyright;
@@ -16,7 +17,9 @@ import edu.damago.tool.JsonProtectedPropertyStrategy;
 
 
 /**
- * Instances of this class model document entities.
+ * Instances of this class model document entities. Note that a document's content is deliberately not mapped, in order
+ * to avoid loading it whenever a document is materialized, for example as the avatar of another entity. Instead, it is
+ * streamed on demand, see {@code DocumentContents}.
  */
 @Entity
 @Table(schema = "cookbook", name = "Document")
@@ -25,8 +28,7 @@ import edu.damago.tool.JsonProtectedPropertyStrategy;
 @JsonbVisibility(JsonProtectedPropertyStrategy.class)
 @Copyright(year = 2022, holders = "Sascha Baumeister")
 public class Document extends BaseEntity {
-	static private final byte[] EMPTY_CONTENT = {};
-	static private final String EMPTY_HASH = HashCodes.sha2HashText(256, EMPTY_CONTENT);
+	static private final String EMPTY_HASH = HashCodes.sha2HashText(256, new byte[0]);
 	static public final String FIND_BY_HASH = "select d from Document as d where d.hash = :hash";
 
 
@@ -39,20 +41,20 @@ public class Document extends BaseEntity {
 	@Column(nullable = false, updatable = false, insertable = true, length = 64, unique = true)
 	private String hash;
 
-	@NotNull @Size(max = 0x10_000_000)	// max = 256MB
+	@PositiveOrZero @Max(0x10_000_000)	// max = 256MB
 	@Column(nullable = false, updatable = false, insertable = true)
-	private byte[] content;
+	private long size;
 
 
 	protected Document () {
-		this(null, null);
+		this(null, null, 0);
 	}
 
 
-	public Document (final String type, final byte[] content) {
-		this.content = content == null ? EMPTY_CONTENT : content;
-		this.hash = this.content.length == 0 ? EMPTY_HASH : HashCodes.sha2HashText(256, this.content);
+	public Document (final String type, final String hash, final long size) {
 		this.type = type == null ? "application/octet-stream" : type;
+		this.hash = hash == null ? EMPTY_HASH : hash;
+		this.size = size;
 	}
 
 
@@ -76,18 +78,12 @@ public class Document extends BaseEntity {
 	}
 
 
-	@JsonbTransient
-	public byte[] getContent () {
-		return this.content;
+	public long getSize () {
+		return this.size;
 	}
 
 
-	protected void setContent (final byte[] content) {
-		this.content = content;
-	}
-
-
-	public int getSize () {
-		return this.content.length;
+	protected void setSize (final long size) {
+		this.size = size;
 	}
 }
\ No newline at end of file
@@ -27,7 +27,6 @@ import javax.validation.constraints.Email;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import edu.damago.tool.Copyright;
-import edu.damago.tool.HashCodes;
 import edu.damago.tool.JsonProtectedPropertyStrategy;
 
 
@@ -42,16 +41,16 @@ import edu.damago.tool.JsonProtectedPropertyStrategy;
 @Copyright(year = 2012, holders = "Sascha Baumeister")
 public class Person extends BaseEntity {
 	static public enum Group { USER, ADMIN }
-	static private final String DEFAULT_PASSWORD = "changeit";
-	static private final String DEFAULT_PASSWORD_HASH = HashCodes.sha2HashText(256, DEFAULT_PASSWORD);
+	// precomputed PasswordHashes.hash("changeit"), as calculating it upon class loading is deliberately expensive
+	static private final String DEFAULT_PASSWORD_HASH = "pbkdf2-sha256$120000$rdAT7FMc0W9hHnH+ueBcRA$+ZY4pjVEwq2sbdmtBDqOy5CF1JZurf4UouFoO/cybvQ";
 
 
 	@NotNull @Email @Size(max = 128)
 	@Column(nullable = false, updatable = true, length = 128, unique = true)
 	private String email;
 
-	@NotNull @Size(min = 64, max = 64)
-	@Column(nullable = false, updatable = true, length = 64)
+	@NotNull @Size(min = 64, max = 128)
+	@Column(nullable = false, updatable = true, length = 128)
 	private String passwordHash;
 
 	@NotNull
@@ -1,5 +1,6 @@
 package edu.damago.cookbook.persistence;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -12,6 +13,7 @@ import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
@@ -30,7 +32,12 @@ import edu.damago.tool.JsonProtectedPropertyStrategy;
  * Instances of this class model recipe entities.
  */
 @Entity
-@Table(schema = "cookbook", name = "Recipe")
+@Table(schema = "cookbook", name = "Recipe", indexes = {
+	@Index(columnList = "pescatarian"),
+	@Index(columnList = "lactoOvoVegetarian"),
+	@Index(columnList = "lactoVegetarian"),
+	@Index(columnList = "vegan")
+})
 @PrimaryKeyJoinColumn(name = "recipeIdentity")
 @DiscriminatorValue("Recipe")
 @JsonbVisibility(JsonProtectedPropertyStrategy.class)
@@ -56,6 +63,18 @@ public class Recipe extends BaseEntity {
 	@Column(nullable = true, updatable = true, length = 4094)
 	private String instruction;
 
+	@Column(nullable = false, updatable = true)
+	private boolean pescatarian;
+
+	@Column(nullable = false, updatable = true)
+	private boolean lactoOvoVegetarian;
+
+	@Column(nullable = false, updatable = true)
+	private boolean lactoVegetarian;
+
+	@Column(nullable = false, updatable = true)
+	private boolean vegan;
+
 	// avoid @NotNull with @ManyToOne!
 	@ManyToOne(optional = false)
 	@JoinColumn(name = "avatarReference", nullable = false, updatable = true)
@@ -85,6 +104,10 @@ public class Recipe extends BaseEntity {
 		this.category = Category.MAIN_COURSE;
 		this.ingredients = Collections.emptySet();
 		this.illustrations = new HashSet<>();
+		this.pescatarian = true;
+		this.lactoOvoVegetarian = true;
+		this.lactoVegetarian = true;
+		this.vegan = true;
 	}
 
 
@@ -183,21 +206,35 @@ public class Recipe extends BaseEntity {
 
 
 	public boolean isPescatarian () {
-		return this.ingredients.stream().allMatch(Ingredient::isPescatarian);
+		return this.pescatarian;
 	}
 
 
 	public boolean isLactoOvoVegetarian () {
-		return this.ingredients.stream().allMatch(Ingredient::isLactoOvoVegetarian);
+		return this.lactoOvoVegetarian;
 	}
 
 
 	public boolean isLactoVegetarian () {
-		return this.ingredients.stream().allMatch(Ingredient::isLactoVegetarian);
+		return this.lactoVegetarian;
 	}
 
 
 	public boolean isVegan () {
-		return this.ingredients.stream().allMatch(Ingredient::isVegan);
+		return this.vegan;
+	}
+
+
+	/**
+	 * Recalculates this recipe's persistent diet flags from the given ingredients. This must be called whenever the
+	 * ingredients of this recipe, or the diet flags of their types, are modified.
+	 * @param ingredients the ingredients
+	 * @throws NullPointerException if the given argument is {@code null}
+	 */
+	public void updateDietFlags (final Collection<Ingredient> ingredients) throws NullPointerException {
+		this.pescatarian = ingredients.stream().allMatch(Ingredient::isPescatarian);
+		this.lactoOvoVegetarian = ingredients.stream().allMatch(Ingredient::isLactoOvoVegetarian);
+		this.lactoVegetarian = ingredients.stream().allMatch(Ingredient::isLactoVegetarian);
+		this.vegan = ingredients.stream().allMatch(Ingredient::isVegan);
 	}
 }
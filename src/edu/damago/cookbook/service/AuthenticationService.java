@@ -0,0 +1,44 @@
+package edu.damago.cookbook.service;
+
+import javax.persistence.EntityManager;
+import javax.validation.constraints.Positive;
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response.Status;
+import edu.damago.cookbook.persistence.Person;
+import edu.damago.tool.ReadOnly;
+import edu.damago.tool.RestJpaLifecycleProvider;
+
+
+@Path(AuthenticationService.PATH)
+public class AuthenticationService {
+	static public final String PATH = "authentication";
+	static public final String TOKEN_PATH = "token";
+
+
+	/**
+	 * HTTP Signature: POST authentication/token IN: - OUT: text/plain
+	 * Note that tokens can only be issued to requesters authenticated using their credentials,
+	 * which prevents tokens from being renewed indefinitely.
+	 * @param requesterIdentity the ID of the authenticated person
+	 * @return the new bearer token
+	 * @throws ClientErrorException if there is no matching requester (403)
+	 */
+	@POST
+	@ReadOnly
+	@Path(TOKEN_PATH)
+	@Produces(MediaType.TEXT_PLAIN)
+	public String issueToken (
+		@HeaderParam(BasicAuthenticationReceiverFilter.REQUESTER_IDENTITY) @Positive final long requesterIdentity
+	) throws ClientErrorException {
+		final EntityManager entityManager = RestJpaLifecycleProvider.entityManager("local_database");
+		final Person requester = entityManager.find(Person.class, requesterIdentity);
+		if (requester == null) throw new ClientErrorException(Status.FORBIDDEN);
+
+		return AuthenticationTokens.issue(requester.getIdentity());
+	}
+}
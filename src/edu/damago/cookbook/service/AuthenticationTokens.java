@@ -0,0 +1,128 @@
+package edu.damago.cookbook.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+
+/**
+ * Facade for issuing and verifying stateless bearer tokens. A token has the form {@code identity.expiry.signature},
+ * with the signature being the Base64 (URL-safe) encoded HMAC-SHA256 of the preceding part, and the expiry being a
+ * timestamp in milliseconds since 1/1/1970. Verifying a token therefore requires neither a database query nor a password
+ * hash calculation. The signing key is taken from the system property {@value #KEY_PROPERTY} (Base64 encoded) if set,
+ * which allows multiple servers to share tokens; otherwise a random key is generated, invalidating all tokens upon restart.
+ * Note that tokens cannot be revoked before their expiry, which is why their time-to-live is kept short. Tokens carry no
+ * authorization claims like the person's group; services look these up for each request instead.
+ */
+public class AuthenticationTokens {
+	static public final String KEY_PROPERTY = "edu.damago.cookbook.token-key";
+	static public final long TIME_TO_LIVE = 900_000;
+	static private final String MAC_ALGORITHM = "HmacSHA256";
+	static private final SecretKeySpec KEY = newKey();
+	static private final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(AuthenticationTokens::newMac);
+
+
+	/**
+	 * Prevents external instantiation.
+	 */
+	private AuthenticationTokens () {}
+
+
+	/**
+	 * Returns a new token for the given person identity, which expires after {@value #TIME_TO_LIVE}ms.
+	 * @param personIdentity the person identity
+	 * @return the token
+	 */
+	static public String issue (final long personIdentity) {
+		final String payload = personIdentity + "." + (System.currentTimeMillis() + TIME_TO_LIVE);
+		return payload + "." + signature(payload);
+	}
+
+
+	/**
+	 * Returns the person identity carried by the given token, after verifying it's signature and expiry.
+	 * @param token the token
+	 * @return the person identity
+	 * @throws NullPointerException if the given argument is {@code null}
+	 * @throws IllegalArgumentException if the given token is malformed, forged or expired
+	 */
+	static public long verify (final String token) throws NullPointerException, IllegalArgumentException {
+		final int signaturePosition = token.lastIndexOf('.');
+		if (signaturePosition == -1) throw new IllegalArgumentException();
+
+		final String payload = token.substring(0, signaturePosition);
+		final byte[] leftSignature = token.substring(signaturePosition + 1).getBytes(StandardCharsets.US_ASCII);
+		final byte[] rightSignature = signature(payload).getBytes(StandardCharsets.US_ASCII);
+		if (!MessageDigest.isEqual(leftSignature, rightSignature)) throw new IllegalArgumentException();
+
+		final String[] fields = payload.split("\\.");
+		if (fields.length != 2) throw new IllegalArgumentException();
+		if (Long.parseLong(fields[1]) <= System.currentTimeMillis()) throw new IllegalArgumentException();
+		return Long.parseLong(fields[0]);
+	}
+
+
+	/**
+	 * Returns the expiry timestamp carried by the given token, without verifying it's signature.
+	 * @param token the token
+	 * @return the expiry timestamp in milliseconds since 1/1/1970
+	 * @throws NullPointerException if the given argument is {@code null}
+	 * @throws IllegalArgumentException if the given token is malformed
+	 */
+	static public long expiry (final String token) throws NullPointerException, IllegalArgumentException {
+		final String[] fields = token.split("\\.");
+		if (fields.length != 3) throw new IllegalArgumentException();
+		return Long.parseLong(fields[1]);
+	}
+
+
+	/**
+	 * Returns the Base64 (URL-safe) encoded signature of the given payload.
+	 * @param payload the payload
+	 * @return the signature
+	 */
+	static private String signature (final String payload) {
+		final byte[] signature = MAC.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+	}
+
+
+	/**
+	 * Returns the signing key, either decoded from the key system property, or randomly generated.
+	 * @return the signing key
+	 * @throws IllegalArgumentException if the key system property is not Base64 encoded
+	 */
+	static private SecretKeySpec newKey () throws IllegalArgumentException {
+		final String encodedKey = System.getProperty(KEY_PROPERTY);
+
+		final byte[] key;
+		if (encodedKey == null) {
+			key = new byte[32];
+			new SecureRandom().nextBytes(key);
+		} else {
+			key = Base64.getDecoder().decode(encodedKey);
+		}
+
+		return new SecretKeySpec(key, MAC_ALGORITHM);
+	}
+
+
+	/**
+	 * Returns a new message authentication code initialized with the signing key.
+	 * @return the message authentication code
+	 */
+	static private Mac newMac () {
+		try {
+			final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+			mac.init(KEY);
+			return mac;
+		} catch (final NoSuchAlgorithmException | InvalidKeyException exception) {
+			throw new AssertionError(exception);
+		}
+	}
+}
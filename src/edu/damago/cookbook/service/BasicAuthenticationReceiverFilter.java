@@ -1,10 +1,16 @@
 package edu.damago.cookbook.service;
 
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
 import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.annotation.Priority;
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
 import javax.ws.rs.Priorities;
 import javax.ws.rs.container.ContainerRequestContext;
@@ -15,14 +21,21 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.ext.Provider;
 import edu.damago.cookbook.persistence.Person;
+import edu.damago.tool.ExpiringCache;
 import edu.damago.tool.HashCodes;
+import edu.damago.tool.PasswordHashes;
 import edu.damago.tool.RestJpaLifecycleProvider;
 
 
 /**
  * JAX-RS filter provider that performs HTTP "Basic" authentication on any REST service request
  * within an HTTP server environment. This aspect-oriented design swaps "Authorization" headers
- * for "X-Requester-Identity" headers within any REST service request being received.
+ * for "X-Requester-Identity" headers within any REST service request being received. Alternatively,
+ * "Bearer" tokens issued by {@link AuthenticationService} are accepted, which are verified purely
+ * in memory, see {@link AuthenticationTokens}. Successfully verified credentials are cached for a
+ * limited time, which spares clients repeatedly sending the same credentials a database query per
+ * request; the cache stores salted digests of the passwords, using a random salt that is never
+ * persisted.
  */
 @Provider
 @Priority(Priorities.AUTHENTICATION)
@@ -33,12 +46,36 @@ public class BasicAuthenticationReceiverFilter implements ContainerRequestFilter
 	 */
 	static public final String REQUESTER_IDENTITY = "X-Requester-Identity";
 
+	static private final int CREDENTIAL_CACHE_CAPACITY = 10_000;
+	static private final long CREDENTIAL_CACHE_TIME_TO_LIVE = 300_000;
+	static private final ExpiringCache<String,Credential> CREDENTIAL_CACHE = new ExpiringCache<>(CREDENTIAL_CACHE_CAPACITY, CREDENTIAL_CACHE_TIME_TO_LIVE);
+	static private final AtomicLong CREDENTIAL_GENERATION = new AtomicLong();
+	static private final byte[] CREDENTIAL_SALT = new byte[32];
+	static {
+		new SecureRandom().nextBytes(CREDENTIAL_SALT);
+	}
+
+
+	/**
+	 * Removes the cached credentials of the given person, which is required whenever it's email or password changes,
+	 * after the change has been committed. Credentials being verified concurrently are not cached either, as they may
+	 * have been read before said change.
+	 * @param personIdentity the person identity
+	 */
+	static public void invalidateCredentials (final long personIdentity) {
+		CREDENTIAL_GENERATION.incrementAndGet();
+		CREDENTIAL_CACHE.removeIf((email, credential) -> credential.personIdentity == personIdentity);
+	}
+
 
 	/**
-	 * Performs HTTP "basic" authentication by calculating a password hash from the password contained in the request's
-	 * "Authorization" header, and comparing it to the one stored in the person matching said header's username. The
-	 * "Authorization" header is consumed in any case, and upon success replaced by a new "Requester-Identity" header that
-	 * contains the authenticated person's identity. The filter chain is aborted in case of a problem.
+	 * Performs HTTP "bearer" authentication if the request's "Authorization" header contains a token, except for requests
+	 * to issue new tokens. Otherwise performs HTTP "basic" authentication by verifying the password contained in the
+	 * request's "Authorization" header against the password hash stored in the person matching said header's username;
+	 * outdated password hashes are upgraded in the process. The "Authorization" header is consumed in any case, and upon
+	 * success replaced by a new "Requester-Identity" header that contains the authenticated person's identity. The filter
+	 * chain is aborted in case of a problem. The database is only consulted, and the deliberately expensive password hash
+	 * only calculated, if there are no cached credentials for said username, or if these do not match.
 	 * @param requestContext the request context
 	 * @throws NullPointerException if the given argument is {@code null}
 	 */
@@ -50,22 +87,43 @@ public class BasicAuthenticationReceiverFilter implements ContainerRequestFilter
 		}
 
 		final List<String> header = headers.remove(HttpHeaders.AUTHORIZATION);
-		if (header != null && !header.isEmpty() && header.get(0).startsWith("Basic ")) {
+		if (header != null && !header.isEmpty() && header.get(0).startsWith("Bearer ")) {
+			final String path = requestContext.getUriInfo().getPath();
+			if (!(path.startsWith("/") ? path.substring(1) : path).equals(AuthenticationService.PATH + "/" + AuthenticationService.TOKEN_PATH)) {
+				try {
+					final long requesterIdentity = AuthenticationTokens.verify(header.get(0).substring(7).trim());
+					headers.putSingle(REQUESTER_IDENTITY, Long.toString(requesterIdentity));
+					return;
+				} catch (final IllegalArgumentException exception) {
+					// invalid or expired token, fall through
+				}
+			}
+		} else if (header != null && !header.isEmpty() && header.get(0).startsWith("Basic ")) {
 			final String credentials = new String(Base64.getDecoder().decode(header.get(0).substring(6)), StandardCharsets.UTF_8);
 			final int delimiterPosition = credentials.indexOf(':');
 			if (delimiterPosition != -1) {
 				final String email = credentials.substring(0, delimiterPosition);
 				final String password = credentials.substring(delimiterPosition + 1);
+				final byte[] passwordDigest = credentialDigest(password);
+
+				final Credential credential = CREDENTIAL_CACHE.get(email);
+				if (credential != null && MessageDigest.isEqual(credential.passwordDigest, passwordDigest)) {
+					headers.putSingle(REQUESTER_IDENTITY, Long.toString(credential.personIdentity));
+					return;
+				}
 
+				// credentials invalidated while the person is being read and verified must not be cached afterwards
+				final long generation = CREDENTIAL_GENERATION.get();
 				final EntityManager entityManager = RestJpaLifecycleProvider.entityManager("local_database");
 				final TypedQuery<Person> query = entityManager.createQuery("select p from Person as p where p.email = :email", Person.class);
 				final List<Person> people = query.setParameter("email", email).getResultList();
 				if (!people.isEmpty()) {
 					final Person requester = people.get(0);
 
-					final String leftHash = requester.getPasswordHash();
-					final String rightHash = HashCodes.sha2HashText(256, password);
-					if (leftHash.equals(rightHash)) {
+					if (PasswordHashes.verify(password, requester.getPasswordHash())) {
+						if (PasswordHashes.isOutdated(requester.getPasswordHash())) upgradePasswordHash(entityManager, requester, password);
+						CREDENTIAL_CACHE.put(email, new Credential(requester.getIdentity(), passwordDigest));
+						if (CREDENTIAL_GENERATION.get() != generation) CREDENTIAL_CACHE.remove(email);
 						headers.putSingle(REQUESTER_IDENTITY, Long.toString(requester.getIdentity()));
 						return;
 					}
@@ -76,4 +134,62 @@ public class BasicAuthenticationReceiverFilter implements ContainerRequestFilter
 		final Response response = Response.status(Status.UNAUTHORIZED).header(HttpHeaders.WWW_AUTHENTICATE, "Basic").build();
 		requestContext.abortWith(response);
 	}
+
+
+	/**
+	 * Replaces the given requester's outdated password hash with a new one, and commits the change. Failing to do so is
+	 * tolerated, as the upgrade is simply repeated upon the next login.
+	 * @param entityManager the entity manager
+	 * @param requester the requester
+	 * @param password the verified password
+	 */
+	static private void upgradePasswordHash (final EntityManager entityManager, final Person requester, final String password) {
+		// read-only requests are processed without a transaction, which must therefore be begun beforehand, and not afterwards
+		final boolean transactional = entityManager.getTransaction().isActive();
+		try {
+			if (!transactional) entityManager.getTransaction().begin();
+			requester.setPasswordHash(PasswordHashes.hash(password));
+			entityManager.getTransaction().commit();
+		} catch (final PersistenceException exception) {
+			Logger.getGlobal().log(Level.WARNING, "Password hash upgrade failed for person {0}.", requester.getIdentity());
+			if (entityManager.getTransaction().isActive()) entityManager.getTransaction().rollback();
+		} finally {
+			if (transactional) entityManager.getTransaction().begin();
+		}
+	}
+
+
+	/**
+	 * Returns the salted digest of the given password, as stored within the credential cache.
+	 * @param password the password
+	 * @return the password digest
+	 */
+	static private byte[] credentialDigest (final String password) {
+		final byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+		final byte[] saltedPasswordBytes = new byte[CREDENTIAL_SALT.length + passwordBytes.length];
+		System.arraycopy(CREDENTIAL_SALT, 0, saltedPasswordBytes, 0, CREDENTIAL_SALT.length);
+		System.arraycopy(passwordBytes, 0, saltedPasswordBytes, CREDENTIAL_SALT.length, passwordBytes.length);
+		return HashCodes.sha2HashCode(256, saltedPasswordBytes);
+	}
+
+
+
+	/**
+	 * Instances of this class represent verified credentials.
+	 */
+	static private class Credential {
+		private final long personIdentity;
+		private final byte[] passwordDigest;
+
+
+		/**
+		 * Initializes a new instance.
+		 * @param personIdentity the person identity
+		 * @param passwordDigest the salted password digest
+		 */
+		public Credential (final long personIdentity, final byte[] passwordDigest) {
+			this.personIdentity = personIdentity;
+			this.passwordDigest = passwordDigest;
+		}
+	}
 }
@@ -1,13 +1,16 @@
 package edu.damago.cookbook.service;
 
 import static java.util.Objects.requireNonNull;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import javax.annotation.Priority;
 import javax.ws.rs.Priorities;
 import javax.ws.rs.client.ClientRequestContext;
 import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.Provider;
 
@@ -15,13 +18,19 @@ import javax.ws.rs.ext.Provider;
 /**
  * JAX-RS filter provider supporting HTTP "Basic" authentication within an HTTP client
  * environment. This aspect-oriented design adds HTTP "Basic Authorization" headers
- * to any REST service request being sent.
+ * to any REST service request being sent. If a token URI is given, the credentials are
+ * instead exchanged for a bearer token once, which is then sent in "Bearer Authorization"
+ * headers until shortly before it expires.
  */
 @Provider
 @Priority(Priorities.AUTHENTICATION)
 public class BasicAuthenticationSenderFilter implements ClientRequestFilter {
+	static private final long TOKEN_RENEWAL_MARGIN = 60_000;
+
 	private final String user;
 	private final String password;
+	private final URI tokenURI;
+	private volatile String token;
 
 
 	/**
@@ -33,6 +42,21 @@ public class BasicAuthenticationSenderFilter implements ClientRequestFilter {
 	public BasicAuthenticationSenderFilter (final String user, final String password) throws NullPointerException {
 		this.user = requireNonNull(user);
 		this.password = requireNonNull(password);
+		this.tokenURI = null;
+	}
+
+
+	/**
+	 * Initializes a new instance that authenticates using bearer tokens.
+	 * @param user the user
+	 * @param password the password
+	 * @param tokenURI the URI of the token endpoint, like {@code http://localhost:8001/services/authentication/token}
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 */
+	public BasicAuthenticationSenderFilter (final String user, final String password, final URI tokenURI) throws NullPointerException {
+		this.user = requireNonNull(user);
+		this.password = requireNonNull(password);
+		this.tokenURI = requireNonNull(tokenURI);
 	}
 
 
@@ -54,16 +78,42 @@ public class BasicAuthenticationSenderFilter implements ClientRequestFilter {
 	}
 
 
+	/**
+	 * Returns the token URI.
+	 * @return the URI of the token endpoint, or {@code null} for none
+	 */
+	public URI getTokenURI () {
+		return this.tokenURI;
+	}
+
+
 	/**
 	 * Adds a HTTP "Basic Authorization" header to the given request context. This filter's
 	 * user and password are combined and base64-encoded to generate said header's value.
+	 * If this filter has a token URI, a HTTP "Bearer Authorization" header is added instead,
+	 * except for requests to said URI. A new token is requested using the given request
+	 * context's client if there is none yet, or if the current one is about to expire.
 	 * @param requestContext the request context
 	 * @throws NullPointerException if the given argument is {@code null}
 	 */
 	public void filter (final ClientRequestContext requestContext) throws NullPointerException {
 		final MultivaluedMap<String,Object> headers = requestContext.getHeaders();
-		final String credentials = this.user + ":" + this.password;
-		final String encodedCredentials = "Basic " + new String(Base64.getEncoder().encode(credentials.getBytes(StandardCharsets.UTF_8)));
-		headers.add(HttpHeaders.AUTHORIZATION, encodedCredentials);
+		if (this.tokenURI == null || this.tokenURI.equals(requestContext.getUri())) {
+			final String credentials = this.user + ":" + this.password;
+			final String encodedCredentials = "Basic " + new String(Base64.getEncoder().encode(credentials.getBytes(StandardCharsets.UTF_8)));
+			headers.add(HttpHeaders.AUTHORIZATION, encodedCredentials);
+			return;
+		}
+
+		String token = this.token;
+		if (token == null || AuthenticationTokens.expiry(token) - TOKEN_RENEWAL_MARGIN <= System.currentTimeMillis()) {
+			token = requestContext.getClient()
+				.target(this.tokenURI)
+				.request(MediaType.TEXT_PLAIN)
+				.post(Entity.text(""), String.class);
+			this.token = token;
+		}
+
+		headers.add(HttpHeaders.AUTHORIZATION, "Bearer " + token);
 	}
 }
\ No newline at end of file
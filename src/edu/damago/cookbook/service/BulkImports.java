@@ -0,0 +1,246 @@
+package edu.damago.cookbook.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+import edu.damago.tool.JSON;
+
+
+/**
+ * Facade for importing entities from newline-delimited JSON streams. The records are read one line at a time and grouped
+ * into batches of {@value #BATCH_SIZE}, each of which is committed within it's own transaction; this bounds both memory
+ * consumption and transaction size, and allows the persistence provider to use JDBC batch writing. If committing a batch
+ * fails, it's records are imported again one at a time, in order to determine the failing ones. Invalid records are
+ * skipped and reported, the import does not stop because of them.
+ */
+public class BulkImports {
+	static private final int BATCH_SIZE = 500;
+	static private final int MAX_REPORTED_ERRORS = 1000;
+
+
+	/**
+	 * Prevents external instantiation.
+	 */
+	private BulkImports () {}
+
+
+	/**
+	 * Imports the newline-delimited JSON records read from the given source, using the given importer. Note that the
+	 * entity manager is cleared after each batch, and that a new transaction is active once this operation completes.
+	 * @param entityManager the entity manager
+	 * @param source the source of the newline-delimited JSON records
+	 * @param importer the record importer
+	 * @return the import report, containing the number of imported and failed records, as well as the line numbers
+	 * 		and messages of up to {@value #MAX_REPORTED_ERRORS} failed records
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 * @throws IOException if there is an I/O related problem
+	 */
+	static public Map<String,Object> run (final EntityManager entityManager, final InputStream source, final RecordImporter importer) throws NullPointerException, IOException {
+		if (entityManager == null | importer == null) throw new NullPointerException();
+
+		final Report report = new Report();
+		final List<Integer> lineNumbers = new ArrayList<>(BATCH_SIZE);
+		final List<Map<String,Object>> records = new ArrayList<>(BATCH_SIZE);
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(source, StandardCharsets.UTF_8));
+		int lineNumber = 0;
+		for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+			lineNumber += 1;
+			if (line.trim().isEmpty()) continue;
+
+			try {
+				final Map<String,Object> record = JSON.parse(line);
+				if (record == null) throw new IllegalArgumentException("record must not be null");
+
+				lineNumbers.add(lineNumber);
+				records.add(record);
+			} catch (final IllegalArgumentException | ClassCastException exception) {
+				report.fail(lineNumber, exception);
+			}
+
+			if (records.size() == BATCH_SIZE) {
+				importBatch(entityManager, importer, lineNumbers, records, report);
+				lineNumbers.clear();
+				records.clear();
+			}
+		}
+
+		if (!records.isEmpty()) importBatch(entityManager, importer, lineNumbers, records, report);
+		return report.toMap();
+	}
+
+
+	/**
+	 * Imports the given batch of records within a single transaction. If this fails, the records not rejected by
+	 * the importer already are imported once more, one at a time, in order to determine and report the failing ones.
+	 * @param entityManager the entity manager
+	 * @param importer the record importer
+	 * @param lineNumbers the line numbers of the records
+	 * @param records the records
+	 * @param report the report
+	 */
+	static private void importBatch (final EntityManager entityManager, final RecordImporter importer, final List<Integer> lineNumbers, final List<Map<String,Object>> records, final Report report) {
+		final boolean[] rejected = new boolean[records.size()];
+		int importCount = 0;
+		try {
+			importer.prepare(entityManager, records);
+			for (int index = 0; index < records.size(); ++index) {
+				try {
+					importer.importRecord(entityManager, records.get(index));
+					importCount += 1;
+				} catch (final NullPointerException | IllegalArgumentException | ClassCastException exception) {
+					rejected[index] = true;
+					report.fail(lineNumbers.get(index), exception);
+				}
+			}
+
+			commit(entityManager);
+			report.succeed(importCount);
+		} catch (final PersistenceException exception) {
+			rollback(entityManager);
+
+			for (int index = 0; index < records.size(); ++index)
+				if (!rejected[index]) importSingle(entityManager, importer, lineNumbers.get(index), records.get(index), report);
+		} finally {
+			entityManager.clear();
+		}
+	}
+
+
+	/**
+	 * Imports the given record within a transaction of it's own.
+	 * @param entityManager the entity manager
+	 * @param importer the record importer
+	 * @param lineNumber the line number of the record
+	 * @param record the record
+	 * @param report the report
+	 */
+	static private void importSingle (final EntityManager entityManager, final RecordImporter importer, final int lineNumber, final Map<String,Object> record, final Report report) {
+		try {
+			final List<Map<String,Object>> records = Collections.singletonList(record);
+			importer.prepare(entityManager, records);
+			importer.importRecord(entityManager, record);
+
+			commit(entityManager);
+			report.succeed(1);
+		} catch (final NullPointerException | IllegalArgumentException | ClassCastException | PersistenceException exception) {
+			rollback(entityManager);
+			report.fail(lineNumber, exception);
+		} finally {
+			entityManager.clear();
+		}
+	}
+
+
+	/**
+	 * Flushes and commits the active transaction, and begins a new one.
+	 * @param entityManager the entity manager
+	 * @throws PersistenceException if flushing or committing fails
+	 */
+	static private void commit (final EntityManager entityManager) throws PersistenceException {
+		final EntityTransaction transaction = entityManager.getTransaction();
+		entityManager.flush();
+		transaction.commit();
+		transaction.begin();
+	}
+
+
+	/**
+	 * Rolls back the active transaction if there is one, and begins a new one.
+	 * @param entityManager the entity manager
+	 */
+	static private void rollback (final EntityManager entityManager) {
+		final EntityTransaction transaction = entityManager.getTransaction();
+		if (transaction.isActive()) transaction.rollback();
+		transaction.begin();
+	}
+
+
+
+	/**
+	 * Instances of this interface import entities from JSON records.
+	 */
+	static public interface RecordImporter {
+
+		/**
+		 * Prepares importing the given records, for example by resolving references
+		 * shared among them using a single query.
+		 * @param entityManager the entity manager
+		 * @param records the records
+		 * @throws PersistenceException if there is a persistence related problem
+		 */
+		void prepare (EntityManager entityManager, List<Map<String,Object>> records) throws PersistenceException;
+
+
+		/**
+		 * Persists the entities represented by the given record, after it has been prepared. Implementations must
+		 * validate the record before persisting anything, as no entities may be persisted for invalid records.
+		 * @param entityManager the entity manager
+		 * @param record the record
+		 * @throws NullPointerException if the record lacks a required property
+		 * @throws IllegalArgumentException if the record contains an invalid property value
+		 * @throws ClassCastException if the record contains a property value of the wrong type
+		 * @throws PersistenceException if there is a persistence related problem
+		 */
+		void importRecord (EntityManager entityManager, Map<String,Object> record) throws NullPointerException, IllegalArgumentException, ClassCastException, PersistenceException;
+	}
+
+
+
+	/**
+	 * Instances of this class collect the outcome of an import.
+	 */
+	static private class Report {
+		private final List<Map<String,Object>> errors = new ArrayList<>();
+		private int importCount;
+		private int failureCount;
+
+
+		/**
+		 * Records the given number of imported records.
+		 * @param count the number of imported records
+		 */
+		public void succeed (final int count) {
+			this.importCount += count;
+		}
+
+
+		/**
+		 * Records the failure of the record at the given line.
+		 * @param lineNumber the line number
+		 * @param exception the cause of the failure
+		 */
+		public void fail (final int lineNumber, final Exception exception) {
+			this.failureCount += 1;
+			if (this.errors.size() == MAX_REPORTED_ERRORS) return;
+
+			final Throwable cause = exception.getCause() == null ? exception : exception.getCause();
+			final Map<String,Object> error = new LinkedHashMap<>();
+			error.put("line", lineNumber);
+			error.put("message", cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage());
+			this.errors.add(error);
+		}
+
+
+		/**
+		 * Returns a map representation of this report.
+		 * @return the map representation
+		 */
+		public Map<String,Object> toMap () {
+			final Map<String,Object> map = new LinkedHashMap<>();
+			map.put("imported", this.importCount);
+			map.put("failed", this.failureCount);
+			map.put("errors", this.errors);
+			return map;
+		}
+	}
+}
@@ -0,0 +1,409 @@
+package edu.damago.cookbook.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.util.List;
+import java.util.function.Supplier;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+import javax.persistence.TypedQuery;
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.ServerErrorException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import edu.damago.cookbook.persistence.Document;
+import edu.damago.tool.BlobStore;
+import edu.damago.tool.FileBlobStore;
+import edu.damago.tool.HashCodes;
+import edu.damago.tool.JdbcBlobStore;
+
+
+/**
+ * Facade for streaming document content into and out of a blob store. Document content is never materialized as a
+ * whole within the heap: Uploads are spooled into a temporary file while their SHA-256 hash is calculated incrementally
+ * using the message digests pooled by {@link HashCodes}, and then put into the blob store using said hash as key; downloads
+ * are streamed from said store. If the system property {@value #BLOB_DIRECTORY_PROPERTY} is set, a {@link FileBlobStore}
+ * rooted in the given directory is used, which keeps the content out of the database entirely. Otherwise, the content is kept within the document table's
+ * content column, accessed using the JDBC connection of a transaction of the entity manager passed by the caller. Uploads
+ * use the caller's active transaction; downloads of read-only requests begin a transaction of their own, which is committed
+ * as soon as the content has been transferred, thereby releasing it's connection before the response is complete.
+ */
+public class DocumentContents {
+	static public final String BLOB_DIRECTORY_PROPERTY = "edu.damago.cookbook.blob-directory";
+	static private final long MAX_CONTENT_SIZE = 0x10_000_000;
+	static private final BlobStore FILE_BLOB_STORE = newFileBlobStore();
+
+	static private final String RANGE = "Range";
+	static private final String IF_RANGE = "If-Range";
+	static private final String ACCEPT_RANGES = "Accept-Ranges";
+	static private final String CONTENT_RANGE = "Content-Range";
+	static private final String RANGE_UNIT = "bytes";
+
+	/** Cache control for URLs whose content never changes, like documents addressed by identity */
+	static public final String CACHE_IMMUTABLE = "public, max-age=31536000, immutable";
+	/** Cache control for URLs whose content may change, like avatars, requiring revalidation before each reuse */
+	static public final String CACHE_REVALIDATE = "no-cache";
+
+
+	/**
+	 * Prevents external instantiation.
+	 */
+	private DocumentContents () {}
+
+
+	/**
+	 * Returns the document matching the given content, after persisting a new one if there is none yet.
+	 * Committing the active transaction is left to the caller.
+	 * @param entityManager the entity manager
+	 * @param type the content type
+	 * @param content the content stream
+	 * @return the matching document
+	 * @throws NullPointerException if the given entity manager or content is {@code null}
+	 * @throws ClientErrorException if the content cannot be read (400), or is too large (413)
+	 * @throws ServerErrorException if the content cannot be stored (500)
+	 * @throws PersistenceException if there is a persistence related problem
+	 */
+	static public Document findOrInsert (final EntityManager entityManager, final String type, final InputStream content) throws NullPointerException, ClientErrorException, ServerErrorException, PersistenceException {
+		return store(entityManager, type, content, true);
+	}
+
+
+	/**
+	 * Persists a new document for the given content. Committing the active transaction is left to the caller.
+	 * @param entityManager the entity manager
+	 * @param type the content type
+	 * @param content the content stream
+	 * @return the new document
+	 * @throws NullPointerException if the given entity manager or content is {@code null}
+	 * @throws ClientErrorException if the content cannot be read (400), or is too large (413)
+	 * @throws ServerErrorException if the content cannot be stored (500)
+	 * @throws PersistenceException if there is a persistence related problem, like a document with
+	 * 		the same content already existing
+	 */
+	static public Document insert (final EntityManager entityManager, final String type, final InputStream content) throws NullPointerException, ClientErrorException, ServerErrorException, PersistenceException {
+		return store(entityManager, type, content, false);
+	}
+
+
+	/**
+	 * Returns a streaming output for the content of the given document.
+	 * @param entityManager the entity manager of the current request
+	 * @param document the document
+	 * @return the streaming output
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 */
+	static public StreamingOutput content (final EntityManager entityManager, final Document document) throws NullPointerException {
+		final String hash = document.getHash();
+		return output(entityManager, (store, sink) -> store.get(hash, sink));
+	}
+
+
+	/**
+	 * Returns a response builder for the content of the given document, honoring the request's conditional and range
+	 * headers. The document hash serves as strong entity tag, which allows answering {@code If-None-Match} requests with
+	 * 304 (not modified) without touching the document content. A single byte range requested via {@code Range}, and
+	 * unless invalidated by a mismatching {@code If-Range}, is answered with 206 (partial content) containing only said
+	 * slice of the content, as read from the blob store. Multiple byte ranges are ignored, resulting in the complete
+	 * content being sent.
+	 * @param entityManager the entity manager of the current request
+	 * @param request the request
+	 * @param requestHeaders the request headers
+	 * @param document the document
+	 * @param cacheControl the cache control header value
+	 * @return the response builder
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 * @throws ClientErrorException if the requested range cannot be satisfied (416)
+	 */
+	static public ResponseBuilder response (final EntityManager entityManager, final Request request, final HttpHeaders requestHeaders, final Document document, final String cacheControl) throws NullPointerException, ClientErrorException {
+		if (entityManager == null | requestHeaders == null | cacheControl == null) throw new NullPointerException();
+
+		final EntityTag entityTag = new EntityTag(document.getHash());
+		final ResponseBuilder notModifiedBuilder = request.evaluatePreconditions(entityTag);
+		if (notModifiedBuilder != null) return notModifiedBuilder.header(HttpHeaders.CACHE_CONTROL, cacheControl);
+
+		final String rangeHeader = requestHeaders.getHeaderString(RANGE);
+		final String ifRangeHeader = requestHeaders.getHeaderString(IF_RANGE);
+		final long[] range = rangeHeader == null || (ifRangeHeader != null && !ifRangeHeader.trim().equals(entityTag.toString()))
+			? null
+			: range(rangeHeader, document.getSize());
+
+		if (range == null) return Response
+			.ok(content(entityManager, document), document.getType())
+			.tag(entityTag)
+			.header(HttpHeaders.CACHE_CONTROL, cacheControl)
+			.header(HttpHeaders.CONTENT_LENGTH, document.getSize())
+			.header(ACCEPT_RANGES, RANGE_UNIT);
+
+		final String hash = document.getHash();
+		final long offset = range[0], length = range[1] - range[0] + 1;
+		final StreamingOutput content = output(entityManager, (store, sink) -> store.get(hash, offset, length, sink));
+		return Response
+			.status(Status.PARTIAL_CONTENT)
+			.entity(content)
+			.type(document.getType())
+			.tag(entityTag)
+			.header(HttpHeaders.CACHE_CONTROL, cacheControl)
+			.header(HttpHeaders.CONTENT_LENGTH, length)
+			.header(CONTENT_RANGE, RANGE_UNIT + " " + range[0] + "-" + range[1] + "/" + document.getSize())
+			.header(ACCEPT_RANGES, RANGE_UNIT);
+	}
+
+
+	/**
+	 * Spools the given content into a temporary file while calculating it's hash, and persists a new document
+	 * for it unless a matching document is to be reused. If the content cannot be put into the blob store, the
+	 * active transaction is rolled back, as the new document would otherwise be committed without content, and
+	 * be reused for subsequent uploads of the same content.
+	 * @param entityManager the entity manager
+	 * @param type the content type
+	 * @param content the content stream
+	 * @param reuse whether or not to reuse a preexisting document with the same content
+	 * @return the matching document
+	 * @throws NullPointerException if the given entity manager or content is {@code null}
+	 * @throws ClientErrorException if the content cannot be read (400), or is too large (413)
+	 * @throws ServerErrorException if the content cannot be stored (500)
+	 * @throws PersistenceException if there is a persistence related problem
+	 */
+	static private Document store (final EntityManager entityManager, final String type, final InputStream content, final boolean reuse) throws NullPointerException, ClientErrorException, ServerErrorException, PersistenceException {
+		if (entityManager == null | content == null) throw new NullPointerException();
+
+		try {
+			final Path file = Files.createTempFile("document-", ".tmp");
+			try {
+				final String hash;
+				final long size;
+				try (OutputStream sink = Files.newOutputStream(file)) {
+					final SpoolingInputStream source = new SpoolingInputStream(content, sink);
+					hash = HashCodes.toHexadecimal(HashCodes.sha2HashCode(256, source));
+					size = source.getSize();
+				}
+
+				if (reuse) {
+					final TypedQuery<Document> query = entityManager.createQuery(Document.FIND_BY_HASH, Document.class);
+					final List<Document> documents = query.setParameter("hash", hash).getResultList();
+					if (!documents.isEmpty()) return documents.get(0);
+				}
+
+				final Document document = new Document(type, hash, size);
+				entityManager.persist(document);
+				entityManager.flush();
+
+				try {
+					blobStore(entityManager).put(hash, file);
+				} catch (final IOException exception) {
+					if (entityManager.getTransaction().isActive()) entityManager.getTransaction().rollback();
+					throw exception;
+				}
+
+				return document;
+			} finally {
+				Files.deleteIfExists(file);
+			}
+		} catch (final IOException exception) {
+			throw new ServerErrorException(Status.INTERNAL_SERVER_ERROR, exception);
+		}
+	}
+
+
+	/**
+	 * Returns the first and last byte position of the single byte range requested by the given range header.
+	 * @param rangeHeader the range header value
+	 * @param size the content size
+	 * @return the first and last byte position (both inclusive), or {@code null} if the given range header is
+	 * 		syntactically invalid, uses a different range unit, or requests multiple ranges, and must be ignored
+	 * @throws ClientErrorException if the requested range cannot be satisfied (416)
+	 */
+	static private long[] range (final String rangeHeader, final long size) throws ClientErrorException {
+		final int unitPosition = rangeHeader.indexOf('=');
+		if (unitPosition == -1 || !rangeHeader.substring(0, unitPosition).trim().equalsIgnoreCase(RANGE_UNIT) || rangeHeader.indexOf(',') != -1) return null;
+
+		final String rangeSpec = rangeHeader.substring(unitPosition + 1).trim();
+		final int separatorPosition = rangeSpec.indexOf('-');
+		if (separatorPosition == -1) return null;
+		final String firstText = rangeSpec.substring(0, separatorPosition).trim(), lastText = rangeSpec.substring(separatorPosition + 1).trim();
+
+		final long first, last;
+		try {
+			if (firstText.isEmpty()) {
+				final long suffixLength = Long.parseLong(lastText);
+				if (suffixLength < 0) return null;
+				first = Math.max(0, size - suffixLength);
+				last = suffixLength == 0 ? -1 : size - 1;
+			} else {
+				first = Long.parseLong(firstText);
+				last = lastText.isEmpty() ? size - 1 : Long.parseLong(lastText);
+				if (first < 0 | last < first) return null;
+			}
+		} catch (final NumberFormatException exception) {
+			return null;
+		}
+
+		if (first >= size | last < first) {
+			final Response response = Response
+				.status(Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+				.header(CONTENT_RANGE, RANGE_UNIT + " */" + size)
+				.build();
+			throw new ClientErrorException(response);
+		}
+
+		return new long[] { first, Math.min(last, size - 1) };
+	}
+
+
+	/**
+	 * Returns a streaming output performing the given transfer using the blob store of the given entity manager. If the
+	 * content is kept within the database, and the entity manager lacks an active transaction as usual for read-only
+	 * requests, a transaction is begun for the duration of the transfer only, as the JDBC connection is exposed within
+	 * transactions exclusively; committing it right after the transfer returns said connection to the pool, instead of
+	 * pinning it until the request scope is closed.
+	 * @param entityManager the entity manager of the current request
+	 * @param transfer the transfer
+	 * @return the streaming output
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 */
+	static private StreamingOutput output (final EntityManager entityManager, final Transfer transfer) throws NullPointerException {
+		if (entityManager == null | transfer == null) throw new NullPointerException();
+		if (FILE_BLOB_STORE != null) return output -> transfer.transfer(FILE_BLOB_STORE, output);
+
+		return output -> {
+			final EntityTransaction transaction = entityManager.getTransaction();
+			final boolean transactionOwned = !transaction.isActive();
+			if (transactionOwned) transaction.begin();
+
+			try {
+				transfer.transfer(blobStore(entityManager), output);
+			} finally {
+				if (transactionOwned && transaction.isActive()) transaction.commit();
+			}
+		};
+	}
+
+
+	/**
+	 * Returns the blob store, which is either the file blob store if the blob directory system property is set, or
+	 * otherwise a JDBC blob store sharing the connection of the given entity manager's active transaction.
+	 * @param entityManager the entity manager
+	 * @return the blob store
+	 */
+	static private BlobStore blobStore (final EntityManager entityManager) {
+		if (FILE_BLOB_STORE != null) return FILE_BLOB_STORE;
+
+		final Supplier<Connection> connectionSupplier = () -> {
+			final Connection connection = entityManager.getTransaction().isActive() ? entityManager.unwrap(Connection.class) : null;
+			if (connection == null) throw new IllegalStateException();
+			return connection;
+		};
+
+		return new JdbcBlobStore(connectionSupplier, "cookbook.Document", "hash", "content");
+	}
+
+
+	/**
+	 * Returns a new file blob store if the blob directory system property is set.
+	 * @return the file blob store, or {@code null} for none
+	 * @throws ExceptionInInitializerError if the blob directory cannot be created
+	 */
+	static private BlobStore newFileBlobStore () throws ExceptionInInitializerError {
+		final String blobDirectory = System.getProperty(BLOB_DIRECTORY_PROPERTY);
+		if (blobDirectory == null) return null;
+
+		try {
+			return new FileBlobStore(Paths.get(blobDirectory));
+		} catch (final IOException exception) {
+			throw new ExceptionInInitializerError(exception);
+		}
+	}
+
+
+
+	/**
+	 * Instances of this class spool the content read from a client stream into a sink, while enforcing the maximum
+	 * content size. Problems reading the client stream are reported as client errors, while problems writing the
+	 * sink are reported as I/O exceptions.
+	 */
+	static private class SpoolingInputStream extends FilterInputStream {
+		private final OutputStream sink;
+		private long size;
+
+
+		/**
+		 * Initializes a new instance.
+		 * @param content the client content stream
+		 * @param sink the sink
+		 */
+		public SpoolingInputStream (final InputStream content, final OutputStream sink) {
+			super(content);
+			this.sink = sink;
+		}
+
+
+		/**
+		 * Returns the number of bytes spooled so far.
+		 * @return the content size
+		 */
+		public long getSize () {
+			return this.size;
+		}
+
+
+		/**
+		 * {@inheritDoc}
+		 * @throws ClientErrorException if the content cannot be read (400), or is too large (413)
+		 */
+		@Override
+		public int read () throws ClientErrorException, IOException {
+			final byte[] buffer = new byte[1];
+			return this.read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xff;
+		}
+
+
+		/**
+		 * {@inheritDoc}
+		 * @throws ClientErrorException if the content cannot be read (400), or is too large (413)
+		 */
+		@Override
+		public int read (final byte[] buffer, final int offset, final int length) throws ClientErrorException, IOException {
+			final int bytesRead;
+			try {
+				bytesRead = super.read(buffer, offset, length);
+			} catch (final IOException exception) {
+				throw new ClientErrorException(Status.BAD_REQUEST, exception);
+			}
+
+			if (bytesRead > 0) {
+				if ((this.size += bytesRead) > MAX_CONTENT_SIZE) throw new ClientErrorException(Status.REQUEST_ENTITY_TOO_LARGE);
+				this.sink.write(buffer, offset, bytesRead);
+			}
+
+			return bytesRead;
+		}
+	}
+
+
+
+	/**
+	 * Transfers content from a blob store into a sink.
+	 */
+	static private interface Transfer {
+
+		/**
+		 * Transfers content from the given blob store into the given sink.
+		 * @param store the blob store
+		 * @param sink the sink
+		 * @throws IOException if there is an I/O related problem
+		 */
+		void transfer (BlobStore store, OutputStream sink) throws IOException;
+	}
+}
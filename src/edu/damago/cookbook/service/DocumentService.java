@@ -1,7 +1,8 @@
 package edu.damago.cookbook.service;
 
+import java.io.InputStream;
 import javax.persistence.EntityManager;
-import javax.persistence.RollbackException;
+import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
@@ -16,14 +17,19 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
 import edu.damago.cookbook.persistence.Document;
 import edu.damago.cookbook.persistence.Person;
 import edu.damago.tool.ContentTypes;
+import edu.damago.tool.EntityLoader;
+import edu.damago.tool.KeysetPagination;
+import edu.damago.tool.QueryBuilder;
 import edu.damago.tool.RestJpaLifecycleProvider;
 
 
@@ -35,21 +41,15 @@ import edu.damago.tool.RestJpaLifecycleProvider;
  */
 @Path("documents")
 public class DocumentService {
-	static private final String QUERY_DOCUMENTS = "select d.identity from Document as d where "
-		+ "(:minCreated is null or d.created >= :minCreated) and "
-		+ "(:maxCreated is null or d.created <= :maxCreated) and "
-		+ "(:minModified is null or d.modified >= :minModified) and "
-		+ "(:maxModified is null or d.modified <= :maxModified) and "
-		+ "(:type is null or d.type = :type) and "
-		+ "(:hash is null or d.hash = :hash) and "
-		+ "(:minSize is null or length(d.content) >= :minSize) and "
-		+ "(:maxSize is null or length(d.content) <= :maxSize)";
+	static private final String QUERY_DOCUMENTS = "select d.identity from Document as d";
+	static private final String ORDER_DOCUMENTS = "order by d.identity";
 
 
 	/**
 	 * HTTP Signature: GET documents IN: - OUT: application/json
 	 * @param resultOffset the result offset, or null for none
 	 * @param resultSize the maximum result size, or null for none
+	 * @param afterIdentity the identity after which the result starts, or null for none
 	 * @param minCreated the minimum creation timestamp, or null for none
 	 * @param minCreated the maximum creation timestamp, or null for none
 	 * @param minModified the minimum modification timestamp, or null for none
@@ -62,9 +62,10 @@ public class DocumentService {
 	 */
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
-	public Document[] queryDocuments (
+	public Response queryDocuments (
 		@QueryParam("result-offset") @PositiveOrZero final Integer resultOffset,
 		@QueryParam("result-size") @PositiveOrZero final Integer resultSize,
+		@QueryParam(KeysetPagination.AFTER_IDENTITY) @PositiveOrZero final Long afterIdentity,
 		@QueryParam("min-created") final Long minCreated,
 		@QueryParam("max-created") final Long maxCreated,
 		@QueryParam("min-modified") final Long minModified,
@@ -76,27 +77,25 @@ public class DocumentService {
 	) {
 		final EntityManager entityManager = RestJpaLifecycleProvider.entityManager("local_database");
 
-		final TypedQuery<Long> query = entityManager.createQuery(QUERY_DOCUMENTS, Long.class);
+		final TypedQuery<Long> query = new QueryBuilder<>("DocumentService.queryDocuments", Long.class, QUERY_DOCUMENTS, ORDER_DOCUMENTS)
+			.where("d.identity > :afterIdentity", "afterIdentity", afterIdentity)
+			.where("d.created >= :minCreated", "minCreated", minCreated)
+			.where("d.created <= :maxCreated", "maxCreated", maxCreated)
+			.where("d.modified >= :minModified", "minModified", minModified)
+			.where("d.modified <= :maxModified", "maxModified", maxModified)
+			.where("d.type = :type", "type", type)
+			.where("d.hash = :hash", "hash", hash)
+			.where("d.size >= :minSize", "minSize", minSize)
+			.where("d.size <= :maxSize", "maxSize", maxSize)
+			.build(entityManager);
 		if (resultOffset != null) query.setFirstResult(resultOffset);
 		if (resultSize != null) query.setMaxResults(resultSize);
-		query.setParameter("minCreated", minCreated);
-		query.setParameter("maxCreated", maxCreated);
-		query.setParameter("minModified", minModified);
-		query.setParameter("maxModified", maxModified);
-		query.setParameter("type", type);
-		query.setParameter("hash", hash);
-		query.setParameter("minSize", minSize);
-		query.setParameter("maxSize", maxSize);
-
-		final Document[] documents = query
-			.getResultList()
-			.stream()
-			.map(identity -> entityManager.find(Document.class, identity))
-			.filter(document -> document != null)
-			.sorted()
+
+		final Document[] documents = EntityLoader
+			.load(entityManager, Document.class, query.getResultList())
 			.toArray(Document[]::new);
 
-		return documents;
+		return KeysetPagination.ok(documents, resultSize, Document::getIdentity).build();
 	}
 
 
@@ -113,7 +112,7 @@ public class DocumentService {
 	public long insertDocument (
 		@HeaderParam(BasicAuthenticationReceiverFilter.REQUESTER_IDENTITY) @Positive final long requesterIdentity,
 		@HeaderParam(HttpHeaders.CONTENT_TYPE) @NotNull @NotEmpty final String documentType,
-		@NotNull final byte[] documentContent
+		@NotNull final InputStream documentContent
 	) throws ClientErrorException {
 		if (documentType.trim().equals(MediaType.APPLICATION_JSON)) throw new ClientErrorException(Status.UNSUPPORTED_MEDIA_TYPE);
 		final EntityManager entityManager = RestJpaLifecycleProvider.entityManager("local_database");
@@ -121,23 +120,18 @@ public class DocumentService {
 		final Person requester = entityManager.find(Person.class, requesterIdentity);
 		if (requester == null || requester.getGroup() != Person.Group.ADMIN) throw new ClientErrorException(Status.FORBIDDEN);
 
-		final Document document = new Document(documentType, documentContent);
-
+		final Document document;
 		try {
-			entityManager.persist(document);
+			document = DocumentContents.insert(entityManager, documentType, documentContent);
 
 			entityManager.getTransaction().commit();
-		} catch (final RollbackException e) {
+		} catch (final PersistenceException e) {
+			if (entityManager.getTransaction().isActive()) entityManager.getTransaction().rollback();
 			throw new ClientErrorException(Status.CONFLICT);
 		} finally {
-			entityManager.getTransaction().begin();
+			if (!entityManager.getTransaction().isActive()) entityManager.getTransaction().begin();
 		}
 
-		// whenever our modifications cause the mirror relationship set of an entity to be
-		// modified, we need to remove said entity from the 2nd level case -> cache eviction!
-		// final Cache cache = entityManager.getEntityManagerFactory().getCache();
-		// cache.evict(BaseEntity.class, 42L);
-
 		return document.getIdentity();
 	}
 
@@ -146,28 +140,34 @@ public class DocumentService {
 	 * HTTP Signature: GET documents/{id} IN: - OUT: "* / *"
 	 * @param acceptHeader the HTTP "Accept" header
 	 * @param documentIdentity the document identity
-	 * @return the document as JSON
-	 * @throws ClientErrorException if there is no matching document (404)
+	 * @param request the request, used to evaluate conditional headers
+	 * @param requestHeaders the request headers, used to evaluate range headers
+	 * @return the document as JSON, or it's content
+	 * @throws ClientErrorException if there is no matching document (404), if neither it's content nor it's JSON
+	 * 		representation is acceptable (406), or if the requested range cannot be satisfied (416)
 	 */
 	@GET
 	@Path("{id}")
 	@Produces(MediaType.WILDCARD)
 	public Response findDocument (
 		@HeaderParam(HttpHeaders.ACCEPT) @NotNull @NotEmpty final String acceptHeader,
-		@PathParam("id") @Positive final long documentIdentity
+		@PathParam("id") @Positive final long documentIdentity,
+		@Context final Request request,
+		@Context final HttpHeaders requestHeaders
 	) throws ClientErrorException {
 		final EntityManager entityManager = RestJpaLifecycleProvider.entityManager("local_database");
 		final Document document = entityManager.find(Document.class, documentIdentity);
 		if (document == null) throw new ClientErrorException(Status.NOT_FOUND);
 
-		final ResponseBuilder builder;
-		if (acceptHeader.equals(MediaType.APPLICATION_JSON)) {
-			builder = Response.ok(document, MediaType.APPLICATION_JSON);
-		} else {
-			if (!ContentTypes.isAcceptable(document.getType(), acceptHeader)) throw new ClientErrorException(Status.NOT_ACCEPTABLE);
-			builder = Response.ok(document.getContent(), document.getType());
-		}
+		// content is preferred over it's JSON meta-data if both are equally acceptable
+		final String contentType = ContentTypes.bestMatch(acceptHeader, document.getType(), MediaType.APPLICATION_JSON);
+		if (contentType == null) throw new ClientErrorException(Status.NOT_ACCEPTABLE);
+
+		final ResponseBuilder builder = contentType.equals(document.getType())
+			? DocumentContents.response(entityManager, request, requestHeaders, document, DocumentContents.CACHE_IMMUTABLE)
+			: Response.ok(document, MediaType.APPLICATION_JSON);
 
-		return builder.build();
+		// the representation depends on the Accept header, which caches must therefore take into account
+		return builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
 	}
 }
@@ -1,6 +1,13 @@
 package edu.damago.cookbook.service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
 import javax.persistence.RollbackException;
 import javax.persistence.TypedQuery;
 import javax.validation.Valid;
@@ -19,37 +26,44 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.ServerErrorException;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import edu.damago.cookbook.persistence.Document;
 import edu.damago.cookbook.persistence.IngredientType;
 import edu.damago.cookbook.persistence.Person;
+import edu.damago.cookbook.persistence.Recipe;
 import edu.damago.tool.ContentTypes;
-import edu.damago.tool.HashCodes;
+import edu.damago.tool.EntityLoader;
+import edu.damago.tool.KeysetPagination;
+import edu.damago.tool.QueryBuilder;
 import edu.damago.tool.RestJpaLifecycleProvider;
 
 
 @Path("ingredient-types")
 public class IngredientTypeService {
-	static private final String QUERY_TYPES = "select t.identity from IngredientType as t where "
-		+ "(:minCreated is null or t.created >= :minCreated) and "
-		+ "(:maxCreated is null or t.created <= :maxCreated) and "
-		+ "(:minModified is null or t.modified >= :minModified) and "
-		+ "(:maxModified is null or t.modified <= :maxModified) and "
-		+ "(:alias is null or t.alias = :alias) and "
-		+ "(:descriptionFragment is null or t.description like concat('%', :descriptionFragment, '%')) and "
-		+ "(:pescatarian is null or t.pescatarian = :pescatarian) and "
-		+ "(:lactoOvoVegetarian is null or t.lactoOvoVegetarian = :lactoOvoVegetarian) and "
-		+ "(:lactoVegetarian is null or t.lactoVegetarian = :lactoVegetarian) and "
-		+ "(:vegan is null or t.vegan = :vegan)";
+	static private final String QUERY_TYPES = "select t.identity from IngredientType as t";
+	static private final String ORDER_TYPES = "order by t.identity";
+	static private final String MATCH_TYPES = "SQL('MATCH (?, ?) AGAINST (? IN NATURAL LANGUAGE MODE)', t.alias, t.description, :query)";
+	static private final String ORDER_RANKED_TYPES = "order by " + MATCH_TYPES + " desc, t.identity";
+	static private final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+	static private final String QUERY_TYPE_RECIPES = "select distinct i.recipe.identity from Ingredient as i where i.type = :type";
+	static private final String UPDATE_TYPE_RECIPES = "UPDATE Recipe AS r SET "
+		+ "r.pescatarian = NOT EXISTS (SELECT * FROM Ingredient AS i JOIN IngredientType AS t ON t.ingredientTypeIdentity = i.typeReference WHERE i.recipeReference = r.recipeIdentity AND NOT t.pescatarian), "
+		+ "r.lactoOvoVegetarian = NOT EXISTS (SELECT * FROM Ingredient AS i JOIN IngredientType AS t ON t.ingredientTypeIdentity = i.typeReference WHERE i.recipeReference = r.recipeIdentity AND NOT t.lactoOvoVegetarian), "
+		+ "r.lactoVegetarian = NOT EXISTS (SELECT * FROM Ingredient AS i JOIN IngredientType AS t ON t.ingredientTypeIdentity = i.typeReference WHERE i.recipeReference = r.recipeIdentity AND NOT t.lactoVegetarian), "
+		+ "r.vegan = NOT EXISTS (SELECT * FROM Ingredient AS i JOIN IngredientType AS t ON t.ingredientTypeIdentity = i.typeReference WHERE i.recipeReference = r.recipeIdentity AND NOT t.vegan) "
+		+ "WHERE r.recipeIdentity IN (SELECT i.recipeReference FROM Ingredient AS i WHERE i.typeReference = ?1)";
 
 
 	/**
 	 * HTTP Signature: GET ingredient-types IN: - OUT: application/json
 	 * @param resultOffset the result offset, or null for none
 	 * @param resultSize the maximum result size, or null for none
+	 * @param afterIdentity the identity after which the result starts, or null for none
 	 * @param minCreated the minimum creation timestamp, or null for none
 	 * @param minCreated the maximum creation timestamp, or null for none
 	 * @param minModified the minimum modification timestamp, or null for none
@@ -60,13 +74,15 @@ public class IngredientTypeService {
 	 * @param lactoOvoVegetarian the lacto-ovo-vegetarian value, or null for none
 	 * @param lactoVegetarian the lacto-vegetarian value, or null for none
 	 * @param vegan the vegan value, or null for none
+	 * @param query the full text search query, ranking the result by relevance, or null for none
 	 * @return the matching ingredient types as JSON
 	 */
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
-	public IngredientType[] queryIngredientTypes (
+	public Response queryIngredientTypes (
 		@QueryParam("result-offset") @PositiveOrZero final Integer resultOffset,
 		@QueryParam("result-size") @PositiveOrZero final Integer resultSize,
+		@QueryParam(KeysetPagination.AFTER_IDENTITY) @PositiveOrZero final Long afterIdentity,
 		@QueryParam("min-created") final Long minCreated,
 		@QueryParam("max-created") final Long maxCreated,
 		@QueryParam("min-modified") final Long minModified,
@@ -76,33 +92,38 @@ public class IngredientTypeService {
 		@QueryParam("pescatarian") final Boolean pescatarian,
 		@QueryParam("lacto-ovo-vegetarian") final Boolean lactoOvoVegetarian,
 		@QueryParam("lacto-vegetarian") final Boolean lactoVegetarian,
-		@QueryParam("vegan") final Boolean vegan
+		@QueryParam("vegan") final Boolean vegan,
+		@QueryParam("q") final String query
 	) {
 		final EntityManager entityManager = RestJpaLifecycleProvider.entityManager("local_database");
 
-		final TypedQuery<Long> query = entityManager.createQuery(QUERY_TYPES, Long.class);
-		if (resultOffset != null) query.setFirstResult(resultOffset);
-		if (resultSize != null) query.setMaxResults(resultSize);
-		query.setParameter("minCreated", minCreated);
-		query.setParameter("maxCreated", maxCreated);
-		query.setParameter("minModified", minModified);
-		query.setParameter("maxModified", maxModified);
-		query.setParameter("alias", alias);
-		query.setParameter("descriptionFragment", descriptionFragment);
-		query.setParameter("pescatarian", pescatarian);
-		query.setParameter("lactoOvoVegetarian", lactoOvoVegetarian);
-		query.setParameter("lactoVegetarian", lactoVegetarian);
-		query.setParameter("vegan", vegan);
-
-		final IngredientType[] types = query
-			.getResultList()
-			.stream()
-			.map(identity -> entityManager.find(IngredientType.class, identity))
-			.filter(type -> type != null)
-			.sorted()
+		// ranked results are not ordered by identity, which excludes keyset pagination
+		if (query != null && afterIdentity != null) throw new ClientErrorException(Status.BAD_REQUEST);
+
+		final TypedQuery<Long> typedQuery = (query == null
+			? new QueryBuilder<>("IngredientTypeService.queryIngredientTypes", Long.class, QUERY_TYPES, ORDER_TYPES)
+			: new QueryBuilder<>("IngredientTypeService.queryRankedIngredientTypes", Long.class, QUERY_TYPES, ORDER_RANKED_TYPES))
+			.where("t.identity > :afterIdentity", "afterIdentity", afterIdentity)
+			.where("t.created >= :minCreated", "minCreated", minCreated)
+			.where("t.created <= :maxCreated", "maxCreated", maxCreated)
+			.where("t.modified >= :minModified", "minModified", minModified)
+			.where("t.modified <= :maxModified", "maxModified", maxModified)
+			.where("t.alias = :alias", "alias", alias)
+			.where("t.description like concat('%', :descriptionFragment, '%')", "descriptionFragment", descriptionFragment)
+			.where("t.pescatarian = :pescatarian", "pescatarian", pescatarian)
+			.where("t.lactoOvoVegetarian = :lactoOvoVegetarian", "lactoOvoVegetarian", lactoOvoVegetarian)
+			.where("t.lactoVegetarian = :lactoVegetarian", "lactoVegetarian", lactoVegetarian)
+			.where("t.vegan = :vegan", "vegan", vegan)
+			.where(MATCH_TYPES + " > 0", "query", query)
+			.build(entityManager);
+		if (resultOffset != null) typedQuery.setFirstResult(resultOffset);
+		if (resultSize != null) typedQuery.setMaxResults(resultSize);
+
+		final IngredientType[] types = EntityLoader
+			.load(entityManager, IngredientType.class, typedQuery.getResultList())
 			.toArray(IngredientType[]::new);
 
-		return types;
+		return KeysetPagination.ok(types, query == null ? resultSize : null, IngredientType::getIdentity).build();
 	}
 
 
@@ -138,6 +159,13 @@ public class IngredientTypeService {
 			if (type == null) throw new ClientErrorException(Status.NOT_FOUND);
 		}
 
+		final boolean dietModified = !insertMode && (
+			type.isPescatarian() != typeTemplate.isPescatarian() ||
+			type.isLactoOvoVegetarian() != typeTemplate.isLactoOvoVegetarian() ||
+			type.isLactoVegetarian() != typeTemplate.isLactoVegetarian() ||
+			type.isVegan() != typeTemplate.isVegan()
+		);
+
 		type.setModified(System.currentTimeMillis());
 		type.setVersion(typeTemplate.getVersion());
 		type.setAlias(typeTemplate.getAlias());
@@ -147,10 +175,20 @@ public class IngredientTypeService {
 		type.setLactoVegetarian(typeTemplate.isLactoVegetarian());
 		type.setVegan(typeTemplate.isVegan());
 
+		final List<Long> recipeReferences;
 		try {
 			if (insertMode) entityManager.persist(type);
 			else entityManager.flush();
 
+			// the recipes using this type store diet flags derived from it, which are recalculated within the database
+			if (dietModified) {
+				final TypedQuery<Long> query = entityManager.createQuery(QUERY_TYPE_RECIPES, Long.class);
+				recipeReferences = query.setParameter("type", type).getResultList();
+				if (!recipeReferences.isEmpty()) entityManager.createNativeQuery(UPDATE_TYPE_RECIPES).setParameter(1, type.getIdentity()).executeUpdate();
+			} else {
+				recipeReferences = List.of();
+			}
+
 			entityManager.getTransaction().commit();
 		} catch (final RollbackException e) {
 			throw new ClientErrorException(Status.CONFLICT);
@@ -158,15 +196,68 @@ public class IngredientTypeService {
 			entityManager.getTransaction().begin();
 		}
 
-		// whenever our modifications cause the mirror relationship set of an entity to be
-		// modified, we need to remove said entity from the 2nd level case -> cache eviction!
-		// final Cache cache = entityManager.getEntityManagerFactory().getCache();
-		// cache.evict(BaseEntity.class, 42L);
+		// the bulk update bypasses the second level cache, so the affected recipes may be cached with stale diet flags
+		final Cache cache = entityManager.getEntityManagerFactory().getCache();
+		for (final long recipeReference : recipeReferences)
+			cache.evict(Recipe.class, recipeReference);
 
 		return type.getIdentity();
 	}
 
 
+	/**
+	 * HTTP Signature: POST ingredient-types/import IN: application/x-ndjson OUT: application/json
+	 * Imports ingredient types from newline-delimited JSON, with each line containing a type's {@code alias} and
+	 * {@code description}, plus it's diet flags {@code pescatarian}, {@code lactoOvoVegetarian}, {@code lactoVegetarian}
+	 * and {@code vegan}. The types are committed in batches; invalid types are skipped and reported, see {@link BulkImports}.
+	 * @param requesterIdentity the ID of the authenticated person
+	 * @param source the ingredient types as newline-delimited JSON
+	 * @return the import report as JSON
+	 * @throws ClientErrorException if the requester is not an administrator (403)
+	 * @throws IOException if there is an I/O related problem
+	 */
+	@POST
+	@Path("import")
+	@Consumes(MEDIA_TYPE_NDJSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	public Map<String,Object> importIngredientTypes (
+		@HeaderParam(BasicAuthenticationReceiverFilter.REQUESTER_IDENTITY) @Positive final long requesterIdentity,
+		@NotNull final InputStream source
+	) throws ClientErrorException, IOException {
+		final EntityManager entityManager = RestJpaLifecycleProvider.entityManager("local_database");
+
+		final Person requester = entityManager.find(Person.class, requesterIdentity);
+		if (requester == null || requester.getGroup() != Person.Group.ADMIN) throw new ClientErrorException(Status.FORBIDDEN);
+		if (entityManager.find(Document.class, 1L) == null) throw new ServerErrorException(Status.SERVICE_UNAVAILABLE);
+
+		return BulkImports.run(entityManager, source, new BulkImports.RecordImporter() {
+			private Document avatar;
+
+			public void prepare (final EntityManager entityManager, final List<Map<String,Object>> records) {
+				this.avatar = entityManager.find(Document.class, 1L);
+			}
+
+			public void importRecord (final EntityManager entityManager, final Map<String,Object> record) {
+				final String alias = (String) Objects.requireNonNull(record.get("alias"), "alias");
+				final String description = (String) record.get("description");
+				if (alias.trim().isEmpty() || alias.length() > 128) throw new IllegalArgumentException("alias must not be blank or exceed 128 characters");
+				if (description != null && description.length() > 4094) throw new IllegalArgumentException("description must not exceed 4094 characters");
+
+				final IngredientType type = new IngredientType();
+				type.setAvatar(this.avatar);
+				type.setAlias(alias);
+				type.setDescription(description);
+				type.setPescatarian(Boolean.TRUE.equals(record.get("pescatarian")));
+				type.setLactoOvoVegetarian(Boolean.TRUE.equals(record.get("lactoOvoVegetarian")));
+				type.setLactoVegetarian(Boolean.TRUE.equals(record.get("lactoVegetarian")));
+				type.setVegan(Boolean.TRUE.equals(record.get("vegan")));
+
+				entityManager.persist(type);
+			}
+		});
+	}
+
+
 	/**
 	 * HTTP Signature: GET ingredient-types/{id} IN: - OUT: application/json
 	 * @param typeIdentity the ingredient type identity
@@ -191,15 +282,19 @@ public class IngredientTypeService {
 	 * HTTP Signature: GET ingredient-types/{id}/avatar IN: - OUT: image/*
 	 * @param acceptHeader the HTTP "Accept" header
 	 * @param typeIdentity the ingredient type identity
+	 * @param request the request, used to evaluate conditional headers
+	 * @param requestHeaders the request headers, used to evaluate range headers
 	 * @return the matching ingredient type's avatar content
-	 * @throws ClientErrorException if there is no matching ingredient type (404)
+	 * @throws ClientErrorException if there is no matching ingredient type (404), or if the requested range cannot be satisfied (416)
 	 */
 	@GET
 	@Path("{id}/avatar")
 	@Produces("image/*")
 	public Response findIngredientTypeAvatar (
 		@HeaderParam(HttpHeaders.ACCEPT) @NotNull @NotEmpty final String acceptHeader,
-		@PathParam("id") @Positive final long typeIdentity
+		@PathParam("id") @Positive final long typeIdentity,
+		@Context final Request request,
+		@Context final HttpHeaders requestHeaders
 	) throws ClientErrorException {
 		final EntityManager entityManager = RestJpaLifecycleProvider.entityManager("local_database");
 		final IngredientType type = entityManager.find(IngredientType.class, typeIdentity);
@@ -207,7 +302,7 @@ public class IngredientTypeService {
 
 		final Document avatar = type.getAvatar();
 		if (!ContentTypes.isAcceptable(avatar.getType(), acceptHeader)) throw new ClientErrorException(Status.NOT_ACCEPTABLE);
-		return Response.ok(avatar.getContent(), avatar.getType()).build();
+		return DocumentContents.response(entityManager, request, requestHeaders, avatar, DocumentContents.CACHE_REVALIDATE).build();
 	}
 
 
@@ -218,7 +313,7 @@ public class IngredientTypeService {
 		@PathParam("id") @Positive final long typeIdentity,
 		@HeaderParam(BasicAuthenticationReceiverFilter.REQUESTER_IDENTITY) @Positive final long requesterIdentity,
 		@HeaderParam(HttpHeaders.CONTENT_TYPE) @NotNull @NotEmpty final String documentType,
-		@NotNull final byte[] documentContent
+		@NotNull final InputStream documentContent
 	) throws ClientErrorException {
 		final EntityManager entityManager = RestJpaLifecycleProvider.entityManager("local_database");
 		final IngredientType type = entityManager.find(IngredientType.class, typeIdentity);
@@ -227,24 +322,16 @@ public class IngredientTypeService {
 		final Person requester = entityManager.find(Person.class, requesterIdentity);
 		if (requester == null || requester.getGroup() != Person.Group.ADMIN) throw new ClientErrorException(Status.FORBIDDEN);
 
-		final TypedQuery<Document> query = entityManager.createQuery(Document.FIND_BY_HASH, Document.class); 
-		query.setParameter("hash", HashCodes.sha2HashText(256, documentContent));
-		final Document image = query
-			.getResultList()
-			.stream()
-			.findAny()
-			.orElseGet(() -> new Document(documentType, documentContent));
-
-		if (image.getIdentity() == 0) {
-			try {
-				entityManager.persist(image);
-
-				entityManager.getTransaction().commit();
-			} catch (final RollbackException e) {
-				throw new ClientErrorException(Status.CONFLICT);
-			} finally {
-				entityManager.getTransaction().begin();
-			}
+		final Document image;
+		try {
+			image = DocumentContents.findOrInsert(entityManager, documentType, documentContent);
+
+			entityManager.getTransaction().commit();
+		} catch (final PersistenceException e) {
+			if (entityManager.getTransaction().isActive()) entityManager.getTransaction().rollback();
+			throw new ClientErrorException(Status.CONFLICT);
+		} finally {
+			if (!entityManager.getTransaction().isActive()) entityManager.getTransaction().begin();
 		}
 
 		type.setAvatar(image);
@@ -0,0 +1,133 @@
+package edu.damago.cookbook.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.validation.constraints.Positive;
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response.Status;
+import org.eclipse.persistence.descriptors.ClassDescriptor;
+import org.eclipse.persistence.internal.identitymaps.IdentityMap;
+import org.eclipse.persistence.jpa.JpaHelper;
+import org.eclipse.persistence.sessions.server.ConnectionPool;
+import org.eclipse.persistence.sessions.server.ServerSession;
+import edu.damago.cookbook.persistence.Person;
+import edu.damago.tool.CacheStatisticsProfiler;
+import edu.damago.tool.MonitoredConnectionPool;
+import edu.damago.tool.RestJpaLifecycleProvider;
+
+
+@Path("metrics")
+public class MetricsService {
+
+	/**
+	 * HTTP Signature: GET metrics IN: - OUT: application/json
+	 * Returns the request statistics of the persistence unit's lifecycle provider, plus the statistics
+	 * of it's connection pools and 2nd level caches, which allows the former to be sized against request concurrency,
+	 * and the latter against the entity working set.
+	 * @param requesterIdentity the ID of the authenticated person
+	 * @return the metrics as JSON
+	 * @throws ClientErrorException if the requester is not an administrator (403)
+	 */
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	public Map<String,Object> queryMetrics (
+		@HeaderParam(BasicAuthenticationReceiverFilter.REQUESTER_IDENTITY) @Positive final long requesterIdentity
+	) throws ClientErrorException {
+		final EntityManager entityManager = RestJpaLifecycleProvider.entityManager("local_database");
+
+		final Person requester = entityManager.find(Person.class, requesterIdentity);
+		if (requester == null || requester.getGroup() != Person.Group.ADMIN) throw new ClientErrorException(Status.FORBIDDEN);
+
+		final RestJpaLifecycleProvider provider = RestJpaLifecycleProvider.provider("local_database");
+		final Map<String,Object> requestMetrics = new LinkedHashMap<>();
+		requestMetrics.put("count", provider.getRequestCount());
+		requestMetrics.put("skippedSetupCount", provider.getSkippedSetupCount());
+
+		final ServerSession session = (ServerSession) JpaHelper.getServerSession(provider.getEntityManagerFactory());
+		final Map<String,Object> poolMetrics = new LinkedHashMap<>();
+		for (final ConnectionPool pool : session.getConnectionPools().values())
+			poolMetrics.put(pool.getName(), connectionPoolMetrics(pool));
+		if (session.getReadConnectionPool() != null)
+			poolMetrics.put(session.getReadConnectionPool().getName(), connectionPoolMetrics(session.getReadConnectionPool()));
+
+		final Map<String,Object> metrics = new LinkedHashMap<>();
+		metrics.put("requests", requestMetrics);
+		metrics.put("connectionPools", poolMetrics);
+		metrics.put("cache", cacheMetrics(session));
+		return metrics;
+	}
+
+
+	/**
+	 * Returns the 2nd level cache metrics of the given session, i.e. the size and capacity of each cache, plus the cache hit
+	 * and miss counts per entity type if the session's profiler collects them. Note that all entity types of an inheritance
+	 * hierarchy share the cache of it's root type.
+	 * @param session the server session
+	 * @return the cache metrics
+	 */
+	static private Map<String,Object> cacheMetrics (final ServerSession session) {
+		final Map<String,Object> cacheMetrics = new TreeMap<>();
+		for (final ClassDescriptor descriptor : session.getDescriptors().values()) {
+			if (descriptor.isAggregateDescriptor() || descriptor.isDescriptorForInterface() || descriptor.getCachePolicy().isIsolated()) continue;
+			if (descriptor.hasInheritance() && !descriptor.getInheritancePolicy().isRootParentDescriptor()) continue;
+
+			final IdentityMap identityMap = session.getIdentityMapAccessorInstance().getIdentityMap(descriptor);
+			final Map<String,Object> metrics = new LinkedHashMap<>();
+			metrics.put("size", identityMap.getSize());
+			metrics.put("maxSize", identityMap.getMaxSize());
+			cacheMetrics.put(descriptor.getJavaClass().getSimpleName(), metrics);
+		}
+
+		final Map<String,Object> metrics = new LinkedHashMap<>();
+		metrics.put("caches", cacheMetrics);
+		if (session.getProfiler() instanceof CacheStatisticsProfiler) {
+			final CacheStatisticsProfiler profiler = (CacheStatisticsProfiler) session.getProfiler();
+			final long hitCount = profiler.getHitCount();
+			final long missCount = profiler.getMissCount();
+			metrics.put("hitCount", hitCount);
+			metrics.put("missCount", missCount);
+			metrics.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+			metrics.put("hitCounts", profiler.getHitCounts());
+			metrics.put("missCounts", profiler.getMissCounts());
+		}
+
+		return metrics;
+	}
+
+
+	/**
+	 * Returns the metrics of the given connection pool.
+	 * @param pool the connection pool
+	 * @return the connection pool metrics
+	 */
+	static private Map<String,Object> connectionPoolMetrics (final ConnectionPool pool) {
+		final Map<String,Object> metrics = new LinkedHashMap<>();
+		metrics.put("minConnections", pool.getMinNumberOfConnections());
+		metrics.put("maxConnections", pool.getMaxNumberOfConnections());
+		metrics.put("totalConnections", pool.getTotalNumberOfConnections());
+		metrics.put("waitTimeoutMillis", pool.getWaitTimeout());
+
+		if (pool instanceof MonitoredConnectionPool) {
+			final MonitoredConnectionPool monitoredPool = (MonitoredConnectionPool) pool;
+			final long acquisitionCount = monitoredPool.getAcquisitionCount();
+			final long acquisitionWaitTime = monitoredPool.getAcquisitionWaitTime(TimeUnit.MICROSECONDS);
+			metrics.put("activeConnections", monitoredPool.getActiveConnectionCount());
+			metrics.put("idleConnections", monitoredPool.getIdleConnectionCount());
+			metrics.put("acquisitionCount", acquisitionCount);
+			metrics.put("acquisitionFailureCount", monitoredPool.getAcquisitionFailureCount());
+			metrics.put("acquisitionWaitMillis", acquisitionWaitTime / 1000);
+			metrics.put("averageAcquisitionWaitMillis", acquisitionCount == 0 ? 0.0 : acquisitionWaitTime / 1000.0 / acquisitionCount);
+			metrics.put("maxAcquisitionWaitMillis", monitoredPool.getMaxAcquisitionWaitTime(TimeUnit.MILLISECONDS));
+		}
+
+		return metrics;
+	}
+}
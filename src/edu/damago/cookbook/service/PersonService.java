@@ -1,6 +1,8 @@
 package edu.damago.cookbook.service;
 
+import java.io.InputStream;
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
 import javax.persistence.RollbackException;
 import javax.persistence.TypedQuery;
 import javax.validation.Valid;
@@ -20,39 +22,33 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.ServerErrorException;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import edu.damago.cookbook.persistence.Document;
 import edu.damago.cookbook.persistence.Person;
 import edu.damago.tool.ContentTypes;
-import edu.damago.tool.HashCodes;
+import edu.damago.tool.EntityLoader;
+import edu.damago.tool.KeysetPagination;
+import edu.damago.tool.PasswordHashes;
+import edu.damago.tool.QueryBuilder;
 import edu.damago.tool.RestJpaLifecycleProvider;
 
 
 @Path("people")
 public class PersonService {
-	static private final String QUERY_PEOPLE = "select p.identity from Person as p where "
-		+ "(:minCreated is null or p.created >= :minCreated) and "
-		+ "(:maxCreated is null or p.created <= :maxCreated) and "
-		+ "(:minModified is null or p.modified >= :minModified) and "
-		+ "(:maxModified is null or p.modified <= :maxModified) and "
-		+ "(:email is null or p.email = :email) and "
-		+ "(:group is null or p.group = :group) and "
-		+ "(:title is null or p.name.title = :title) and "
-		+ "(:surname is null or p.name.family = :surname) and "
-		+ "(:forename is null or p.name.given = :forename) and "
-		+ "(:street is null or p.address.street = :street) and "
-		+ "(:city is null or p.address.city = :city) and "
-		+ "(:country is null or p.address.country = :country) and "
-		+ "(:postcode is null or p.address.postcode = :postcode)";
+	static private final String QUERY_PEOPLE = "select p.identity from Person as p";
+	static private final String ORDER_PEOPLE = "order by p.identity";
 
 
 	/**
 	 * HTTP Signature: GET recipes IN: - OUT: application/json
 	 * @param resultOffset the result offset, or null for none
 	 * @param resultSize the maximum result size, or null for none
+	 * @param afterIdentity the identity after which the result starts, or null for none
 	 * @param minCreated the minimum creation timestamp, or null for none
 	 * @param minCreated the maximum creation timestamp, or null for none
 	 * @param minModified the minimum modification timestamp, or null for none
@@ -61,9 +57,10 @@ public class PersonService {
 	 */
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
-	public Person[] queryPerson (
+	public Response queryPerson (
 		@QueryParam("result-offset") @PositiveOrZero final Integer resultOffset,
 		@QueryParam("result-size") @PositiveOrZero final Integer resultSize,
+		@QueryParam(KeysetPagination.AFTER_IDENTITY) @PositiveOrZero final Long afterIdentity,
 		@QueryParam("min-created") final Long minCreated,
 		@QueryParam("max-created") final Long maxCreated,
 		@QueryParam("min-modified") final Long minModified,
@@ -80,32 +77,30 @@ public class PersonService {
 	) {
 		final EntityManager entityManager = RestJpaLifecycleProvider.entityManager("local_database");
 
-		final TypedQuery<Long> query = entityManager.createQuery(QUERY_PEOPLE, Long.class);
+		final TypedQuery<Long> query = new QueryBuilder<>("PersonService.queryPerson", Long.class, QUERY_PEOPLE, ORDER_PEOPLE)
+			.where("p.identity > :afterIdentity", "afterIdentity", afterIdentity)
+			.where("p.created >= :minCreated", "minCreated", minCreated)
+			.where("p.created <= :maxCreated", "maxCreated", maxCreated)
+			.where("p.modified >= :minModified", "minModified", minModified)
+			.where("p.modified <= :maxModified", "maxModified", maxModified)
+			.where("p.email = :email", "email", email)
+			.where("p.group = :group", "group", group)
+			.where("p.name.title = :title", "title", title)
+			.where("p.name.family = :surname", "surname", surname)
+			.where("p.name.given = :forename", "forename", forename)
+			.where("p.address.street = :street", "street", street)
+			.where("p.address.city = :city", "city", city)
+			.where("p.address.country = :country", "country", country)
+			.where("p.address.postcode = :postcode", "postcode", postcode)
+			.build(entityManager);
 		if (resultOffset != null) query.setFirstResult(resultOffset);
 		if (resultSize != null) query.setMaxResults(resultSize);
-		query.setParameter("minCreated", minCreated);
-		query.setParameter("maxCreated", maxCreated);
-		query.setParameter("minModified", minModified);
-		query.setParameter("maxModified", maxModified);
-		query.setParameter("email", email);
-		query.setParameter("group", group);
-		query.setParameter("title", title);
-		query.setParameter("surname", surname);
-		query.setParameter("forename", forename);
-		query.setParameter("street", street);
-		query.setParameter("city", city);
-		query.setParameter("country", country);
-		query.setParameter("postcode", postcode);
-
-		final Person[] people = query
-			.getResultList()
-			.stream()
-			.map(identity -> entityManager.find(Person.class, identity))
-			.filter(person -> person != null)
-			.sorted()
+
+		final Person[] people = EntityLoader
+			.load(entityManager, Person.class, query.getResultList())
 			.toArray(Person[]::new);
 
-		return people;
+		return KeysetPagination.ok(people, resultSize, Person::getIdentity).build();
 	}
 
 
@@ -143,6 +138,7 @@ public class PersonService {
 			if (person.getIdentity() != requester.getIdentity() && requester.getGroup() != Person.Group.ADMIN) throw new ClientErrorException(Status.FORBIDDEN);
 		}
 
+		final boolean credentialsModified = password != null || !personTemplate.getEmail().equals(person.getEmail());
 		person.setModified(System.currentTimeMillis());
 		person.setVersion(personTemplate.getVersion());
 		person.setEmail(personTemplate.getEmail());
@@ -156,7 +152,7 @@ public class PersonService {
 		person.getPhones().retainAll(personTemplate.getPhones());
 		person.getPhones().addAll(personTemplate.getPhones());
 		if (requester.getGroup().ordinal() >= personTemplate.getGroup().ordinal()) person.setGroup(personTemplate.getGroup());
-		if (password != null) person.setPasswordHash(HashCodes.sha2HashText(256, password));
+		if (password != null) person.setPasswordHash(PasswordHashes.hash(password));
 
 		try {
 			if (insertMode) entityManager.persist(person);
@@ -169,11 +165,7 @@ public class PersonService {
 			entityManager.getTransaction().begin();
 		}
 
-		// whenever our modifications cause the mirror relationship set of an entity to be
-		// modified, we need to remove said entity from the 2nd level case -> cache eviction!
-		// final Cache cache = entityManager.getEntityManagerFactory().getCache();
-		// cache.evict(BaseEntity.class, 42L);
-
+		if (credentialsModified) BasicAuthenticationReceiverFilter.invalidateCredentials(person.getIdentity());
 		return person.getIdentity();
 	}
 
@@ -205,15 +197,19 @@ public class PersonService {
 	 * HTTP Signature: GET people/{id}/avatar IN: - OUT: image/*
 	 * @param acceptHeader the HTTP "Accept" header
 	 * @param personIdentity the person identity
+	 * @param request the request, used to evaluate conditional headers
+	 * @param requestHeaders the request headers, used to evaluate range headers
 	 * @return the matching person's avatar content
-	 * @throws ClientErrorException if there is no matching person (404)
+	 * @throws ClientErrorException if there is no matching person (404), or if the requested range cannot be satisfied (416)
 	 */
 	@GET
 	@Path("{id}/avatar")
 	@Produces("image/*")
 	public Response findTypeAvatar (
 		@HeaderParam(HttpHeaders.ACCEPT) @NotNull @NotEmpty final String acceptHeader,
-		@PathParam("id") @Positive final long typeIdentity
+		@PathParam("id") @Positive final long typeIdentity,
+		@Context final Request request,
+		@Context final HttpHeaders requestHeaders
 	) throws ClientErrorException {
 		final EntityManager entityManager = RestJpaLifecycleProvider.entityManager("local_database");
 		final Person person = entityManager.find(Person.class, typeIdentity);
@@ -221,7 +217,7 @@ public class PersonService {
 
 		final Document avatar = person.getAvatar();
 		if (!ContentTypes.isAcceptable(avatar.getType(), acceptHeader)) throw new ClientErrorException(Status.NOT_ACCEPTABLE);
-		return Response.ok(avatar.getContent(), avatar.getType()).build();
+		return DocumentContents.response(entityManager, request, requestHeaders, avatar, DocumentContents.CACHE_REVALIDATE).build();
 	}
 
 
@@ -232,7 +228,7 @@ public class PersonService {
 		@PathParam("id") @Positive final long personIdentity,
 		@HeaderParam(BasicAuthenticationReceiverFilter.REQUESTER_IDENTITY) @Positive final long requesterIdentity,
 		@HeaderParam(HttpHeaders.CONTENT_TYPE) @NotNull @NotEmpty final String documentType,
-		@NotNull final byte[] documentContent
+		@NotNull final InputStream documentContent
 	) throws ClientErrorException {
 		final EntityManager entityManager = RestJpaLifecycleProvider.entityManager("local_database");
 		final Person person = entityManager.find(Person.class, personIdentity);
@@ -241,24 +237,16 @@ public class PersonService {
 		final Person requester = entityManager.find(Person.class, requesterIdentity);
 		if (requester == null || (requester.getIdentity() != person.getIdentity() && requester.getGroup() != Person.Group.ADMIN)) throw new ClientErrorException(Status.FORBIDDEN);
 
-		final TypedQuery<Document> query = entityManager.createQuery(Document.FIND_BY_HASH, Document.class); 
-		query.setParameter("hash", HashCodes.sha2HashText(256, documentContent));
-		final Document image = query
-			.getResultList()
-			.stream()
-			.findAny()
-			.orElseGet(() -> new Document(documentType, documentContent));
-
-		if (image.getIdentity() == 0) {
-			try {
-				entityManager.persist(image);
-
-				entityManager.getTransaction().commit();
-			} catch (final RollbackException e) {
-				throw new ClientErrorException(Status.CONFLICT);
-			} finally {
-				entityManager.getTransaction().begin();
-			}
+		final Document image;
+		try {
+			image = DocumentContents.findOrInsert(entityManager, documentType, documentContent);
+
+			entityManager.getTransaction().commit();
+		} catch (final PersistenceException e) {
+			if (entityManager.getTransaction().isActive()) entityManager.getTransaction().rollback();
+			throw new ClientErrorException(Status.CONFLICT);
+		} finally {
+			if (!entityManager.getTransaction().isActive()) entityManager.getTransaction().begin();
 		}
 
 		person.setAvatar(image);
@@ -1,13 +1,25 @@
 package edu.damago.cookbook.service;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.LongStream;
-import javax.persistence.Cache;
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import javax.persistence.Query;
 import javax.persistence.RollbackException;
 import javax.persistence.TypedQuery;
 import javax.validation.Valid;
@@ -28,10 +40,17 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.ServerErrorException;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import org.eclipse.persistence.annotations.BatchFetchType;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import org.eclipse.persistence.queries.CursoredStream;
 import edu.damago.cookbook.persistence.Document;
 import edu.damago.cookbook.persistence.Ingredient;
 import edu.damago.cookbook.persistence.Ingredient.Unit;
@@ -39,44 +58,44 @@ import edu.damago.cookbook.persistence.IngredientType;
 import edu.damago.cookbook.persistence.Person;
 import edu.damago.cookbook.persistence.Recipe;
 import edu.damago.tool.ContentTypes;
-import edu.damago.tool.HashCodes;
+import edu.damago.tool.EntityLoader;
 import edu.damago.tool.JSON;
+import edu.damago.tool.KeysetPagination;
+import edu.damago.tool.QueryBuilder;
 import edu.damago.tool.RestJpaLifecycleProvider;
 
 
 @Path("recipes")
 public class RecipeService {
-	static private final String QUERY_RECIPES = "select r.identity from Recipe as r left outer join r.owner as o where "
-		+ "(:minCreated is null or r.created >= :minCreated) and "
-		+ "(:maxCreated is null or r.created <= :maxCreated) and "
-		+ "(:minModified is null or r.modified >= :minModified) and "
-		+ "(:maxModified is null or r.modified <= :maxModified) and "
-		+ "(:title is null or r.title = :title) and "
-		+ "(:category is null or r.category = :category) and "
-		+ "(:descriptionFragment is null or r.description like concat('%', :descriptionFragment, '%')) and "
-		+ "(:instructionFragment is null or r.instruction like concat('%', :instructionFragment, '%')) and "
-		+ "(:pescatarian is null or (true = all(select i.type.pescatarian from r.ingredients as i)) = :pescatarian) and "
-		+ "(:lactoOvoVegetarian is null or (true = all(select i.type.lactoOvoVegetarian from r.ingredients as i)) = :lactoOvoVegetarian) and "
-		+ "(:lactoVegetarian is null or (true = all(select i.type.lactoVegetarian from r.ingredients as i)) = :lactoVegetarian) and "
-		+ "(:vegan is null or (true = all(select i.type.vegan from r.ingredients as i)) = :vegan) and "
-		+ "(:ownerEmail is null or (o.email = :ownerEmail))";
+	static private final String QUERY_RECIPES = "select r from Recipe as r";
+	static private final String ORDER_RECIPES = "order by r.identity";
+	static private final String MATCH_RECIPES = "SQL('MATCH (?, ?, ?) AGAINST (? IN NATURAL LANGUAGE MODE)', r.title, r.description, r.instruction, :query)";
+	static private final String ORDER_RANKED_RECIPES = "order by " + MATCH_RECIPES + " desc, r.identity";
+	static private final String QUERY_EXPORT_RECIPES = "select r from Recipe as r order by r.identity";
+	static private final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+	static private final String QUERY_TYPES_BY_ALIAS = "select t from IngredientType as t where t.alias in :aliases";
+	static private final int EXPORT_PAGE_SIZE = 500;
+	static private final Jsonb JSONB = JsonbBuilder.create();
 
 
 	/**
 	 * HTTP Signature: GET recipes IN: - OUT: application/json
 	 * @param resultOffset the result offset, or null for none
 	 * @param resultSize the maximum result size, or null for none
+	 * @param afterIdentity the identity after which the result starts, or null for none
 	 * @param minCreated the minimum creation timestamp, or null for none
 	 * @param minCreated the maximum creation timestamp, or null for none
 	 * @param minModified the minimum modification timestamp, or null for none
 	 * @param maxModified the maximum modification timestamp, or null for none
+	 * @param query the full text search query, ranking the result by relevance, or null for none
 	 * @return the matching recipes as JSON
 	 */
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
-	public Recipe[] queryRecipes (
+	public Response queryRecipes (
 		@QueryParam("result-offset") @PositiveOrZero final Integer resultOffset,
 		@QueryParam("result-size") @PositiveOrZero final Integer resultSize,
+		@QueryParam(KeysetPagination.AFTER_IDENTITY) @PositiveOrZero final Long afterIdentity,
 		@QueryParam("min-created") final Long minCreated,
 		@QueryParam("max-created") final Long maxCreated,
 		@QueryParam("min-modified") final Long minModified,
@@ -85,6 +104,7 @@ public class RecipeService {
 		@QueryParam("category") final Recipe.Category category,
 		@QueryParam("description-fragment") final String descriptionFragment,
 		@QueryParam("instruction-fragment") final String instructionFragment,
+		@QueryParam("q") final String query,
 		@QueryParam("pescatarian") final Boolean pescatarian,
 		@QueryParam("lacto-ovo-vegetarian") final Boolean lactoOvoVegetarian,
 		@QueryParam("lacto-vegetarian") final Boolean lactoVegetarian,
@@ -93,32 +113,122 @@ public class RecipeService {
 	) {
 		final EntityManager entityManager = RestJpaLifecycleProvider.entityManager("local_database");
 
-		final TypedQuery<Long> query = entityManager.createQuery(QUERY_RECIPES, Long.class);
-		if (resultOffset != null) query.setFirstResult(resultOffset);
-		if (resultSize != null) query.setMaxResults(resultSize);
-		query.setParameter("minCreated", minCreated);
-		query.setParameter("maxCreated", maxCreated);
-		query.setParameter("minModified", minModified);
-		query.setParameter("maxModified", maxModified);
-		query.setParameter("title", title);
-		query.setParameter("category", category);
-		query.setParameter("descriptionFragment", descriptionFragment);
-		query.setParameter("instructionFragment", instructionFragment);
-		query.setParameter("pescatarian", pescatarian);
-		query.setParameter("lactoOvoVegetarian", lactoOvoVegetarian);
-		query.setParameter("lactoVegetarian", lactoVegetarian);
-		query.setParameter("vegan", vegan);
-		query.setParameter("ownerEmail", ownerEmail);
-
-		final Recipe[] recipes = query
+		// ranked results are not ordered by identity, which excludes keyset pagination
+		if (query != null && afterIdentity != null) throw new ClientErrorException(Status.BAD_REQUEST);
+
+		// fetch the matching recipes in one statement, and their related entities in one batch statement
+		// per relationship, instead of selecting identities and resolving each one individually
+		final TypedQuery<Recipe> typedQuery = (query == null
+			? new QueryBuilder<>("RecipeService.queryRecipes", Recipe.class, QUERY_RECIPES, ORDER_RECIPES)
+			: new QueryBuilder<>("RecipeService.queryRankedRecipes", Recipe.class, QUERY_RECIPES, ORDER_RANKED_RECIPES))
+			.where("r.identity > :afterIdentity", "afterIdentity", afterIdentity)
+			.where("r.created >= :minCreated", "minCreated", minCreated)
+			.where("r.created <= :maxCreated", "maxCreated", maxCreated)
+			.where("r.modified >= :minModified", "minModified", minModified)
+			.where("r.modified <= :maxModified", "maxModified", maxModified)
+			.where("r.title = :title", "title", title)
+			.where("r.category = :category", "category", category)
+			.where("r.description like concat('%', :descriptionFragment, '%')", "descriptionFragment", descriptionFragment)
+			.where("r.instruction like concat('%', :instructionFragment, '%')", "instructionFragment", instructionFragment)
+			.where(MATCH_RECIPES + " > 0", "query", query)
+			.where("r.pescatarian = :pescatarian", "pescatarian", pescatarian)
+			.where("r.lactoOvoVegetarian = :lactoOvoVegetarian", "lactoOvoVegetarian", lactoOvoVegetarian)
+			.where("r.lactoVegetarian = :lactoVegetarian", "lactoVegetarian", lactoVegetarian)
+			.where("r.vegan = :vegan", "vegan", vegan)
+			.where("r.owner.email = :ownerEmail", "ownerEmail", ownerEmail)
+			.hint(QueryHints.BATCH_TYPE, BatchFetchType.IN)
+			.hint(QueryHints.BATCH, "r.owner")
+			.hint(QueryHints.BATCH, "r.avatar")
+			.hint(QueryHints.BATCH, "r.ingredients")
+			.hint(QueryHints.BATCH, "r.ingredients.type")
+			.build(entityManager);
+		if (resultOffset != null) typedQuery.setFirstResult(resultOffset);
+		if (resultSize != null) typedQuery.setMaxResults(resultSize);
+
+		final Recipe[] recipes = typedQuery
 			.getResultList()
-			.stream()
-			.map(identity -> entityManager.find(Recipe.class, identity))
-			.filter(recipe -> recipe != null)
-			.sorted()
 			.toArray(Recipe[]::new);
 
-		return recipes;
+		return KeysetPagination.ok(recipes, query == null ? resultSize : null, Recipe::getIdentity).build();
+	}
+
+
+	/**
+	 * HTTP Signature: GET recipes/export IN: - OUT: application/x-ndjson
+	 * Streams all recipes, including their ingredients and diet flags, as newline-delimited JSON. The recipes are
+	 * read using a database cursor in pages of {@value #EXPORT_PAGE_SIZE}, with their relationships being batch
+	 * fetched per page; both the cursor and the entity manager are cleared after each page in order to keep memory
+	 * consumption bounded regardless of the number of recipes.
+	 * @return the recipes as newline-delimited JSON
+	 */
+	@GET
+	@Path("export")
+	@Produces(MEDIA_TYPE_NDJSON)
+	public StreamingOutput exportRecipes () {
+		final EntityManager entityManager = RestJpaLifecycleProvider.entityManager("local_database");
+
+		return output -> {
+			// untyped, as the single result of a cursor query is the cursor itself
+			final Query query = entityManager.createQuery(QUERY_EXPORT_RECIPES);
+			query.setHint(QueryHints.CURSOR, HintValues.TRUE);
+			query.setHint(QueryHints.CURSOR_PAGE_SIZE, EXPORT_PAGE_SIZE);
+			query.setHint(QueryHints.JDBC_FETCH_SIZE, EXPORT_PAGE_SIZE);
+			query.setHint(QueryHints.READ_ONLY, HintValues.TRUE);
+			query.setHint(QueryHints.BATCH_TYPE, BatchFetchType.IN);
+			query.setHint(QueryHints.BATCH, "r.owner");
+			query.setHint(QueryHints.BATCH, "r.avatar");
+			query.setHint(QueryHints.BATCH, "r.illustrations");
+			query.setHint(QueryHints.BATCH, "r.ingredients");
+			query.setHint(QueryHints.BATCH, "r.ingredients.type");
+
+			final Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+			final CursoredStream cursor = (CursoredStream) query.getSingleResult();
+			try {
+				for (int count = 1; cursor.hasNext(); ++count) {
+					writer.write(JSONB.toJson(cursor.next()));
+					writer.write('\n');
+
+					if (count % EXPORT_PAGE_SIZE == 0) {
+						cursor.clear();
+						entityManager.clear();
+					}
+				}
+			} finally {
+				cursor.close();
+			}
+
+			writer.flush();
+		};
+	}
+
+
+	/**
+	 * HTTP Signature: POST recipes/import IN: application/x-ndjson OUT: application/json
+	 * Imports recipes from newline-delimited JSON, with each line containing a recipe's {@code title}, {@code category},
+	 * {@code description} and {@code instruction}, plus it's {@code ingredients} as an array of objects containing the
+	 * ingredient type {@code alias}, {@code amount} and {@code unit}. The recipes are owned by the requester, and are
+	 * committed in batches; invalid recipes are skipped and reported, see {@link BulkImports}.
+	 * @param requesterIdentity the ID of the authenticated person
+	 * @param source the recipes as newline-delimited JSON
+	 * @return the import report as JSON
+	 * @throws ClientErrorException if the requester is not an administrator (403)
+	 * @throws IOException if there is an I/O related problem
+	 */
+	@POST
+	@Path("import")
+	@Consumes(MEDIA_TYPE_NDJSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	public Map<String,Object> importRecipes (
+		@HeaderParam(BasicAuthenticationReceiverFilter.REQUESTER_IDENTITY) @Positive final long requesterIdentity,
+		@NotNull final InputStream source
+	) throws ClientErrorException, IOException {
+		final EntityManager entityManager = RestJpaLifecycleProvider.entityManager("local_database");
+
+		final Person requester = entityManager.find(Person.class, requesterIdentity);
+		if (requester == null || requester.getGroup() != Person.Group.ADMIN) throw new ClientErrorException(Status.FORBIDDEN);
+		if (entityManager.find(Document.class, 1L) == null) throw new ServerErrorException(Status.SERVICE_UNAVAILABLE);
+
+		return BulkImports.run(entityManager, source, new RecipeImporter(requesterIdentity));
 	}
 
 
@@ -174,11 +284,6 @@ public class RecipeService {
 			entityManager.getTransaction().begin();
 		}
 
-		// whenever our modifications cause the mirror relationship set of an entity to be
-		// modified, we need to remove said entity from the 2nd level case -> cache eviction!
-		final Cache cache = entityManager.getEntityManagerFactory().getCache();
-		cache.evict(Person.class, requester.getIdentity());
-
 		return recipe.getIdentity();
 	}
 
@@ -207,15 +312,19 @@ public class RecipeService {
 	 * HTTP Signature: GET recipes/{id}/avatar IN: - OUT: image/*
 	 * @param acceptHeader the HTTP "Accept" header
 	 * @param recipeIdentity the recipe identity
+	 * @param request the request, used to evaluate conditional headers
+	 * @param requestHeaders the request headers, used to evaluate range headers
 	 * @return the matching recipe's avatar content
-	 * @throws ClientErrorException if there is no matching recipe (404)
+	 * @throws ClientErrorException if there is no matching recipe (404), or if the requested range cannot be satisfied (416)
 	 */
 	@GET
 	@Path("{id}/avatar")
 	@Produces("image/*")
 	public Response findRecipeAvatar (
 		@HeaderParam(HttpHeaders.ACCEPT) @NotNull @NotEmpty final String acceptHeader,
-		@PathParam("id") @Positive final long recipeIdentity
+		@PathParam("id") @Positive final long recipeIdentity,
+		@Context final Request request,
+		@Context final HttpHeaders requestHeaders
 	) throws ClientErrorException {
 		final EntityManager entityManager = RestJpaLifecycleProvider.entityManager("local_database");
 		final Recipe recipe = entityManager.find(Recipe.class, recipeIdentity);
@@ -223,7 +332,7 @@ public class RecipeService {
 
 		final Document avatar = recipe.getAvatar();
 		if (!ContentTypes.isAcceptable(avatar.getType(), acceptHeader)) throw new ClientErrorException(Status.NOT_ACCEPTABLE);
-		return Response.ok(avatar.getContent(), avatar.getType()).build();
+		return DocumentContents.response(entityManager, request, requestHeaders, avatar, DocumentContents.CACHE_REVALIDATE).build();
 	}
 
 
@@ -234,7 +343,7 @@ public class RecipeService {
 		@PathParam("id") @Positive final long recipeIdentity,
 		@HeaderParam(BasicAuthenticationReceiverFilter.REQUESTER_IDENTITY) @Positive final long requesterIdentity,
 		@HeaderParam(HttpHeaders.CONTENT_TYPE) @NotNull @NotEmpty final String documentType,
-		@NotNull final byte[] documentContent
+		@NotNull final InputStream documentContent
 	) throws ClientErrorException {
 		final EntityManager entityManager = RestJpaLifecycleProvider.entityManager("local_database");
 		final Recipe recipe = entityManager.find(Recipe.class, recipeIdentity);
@@ -243,24 +352,16 @@ public class RecipeService {
 		final Person requester = entityManager.find(Person.class, requesterIdentity);
 		if (requester == null || (recipe.getOwner() != null && requester.getIdentity() != recipe.getOwner().getIdentity() && requester.getGroup() != Person.Group.ADMIN)) throw new ClientErrorException(Status.FORBIDDEN);
 
-		final TypedQuery<Document> query = entityManager.createQuery(Document.FIND_BY_HASH, Document.class); 
-		query.setParameter("hash", HashCodes.sha2HashText(256, documentContent));
-		final Document image = query
-			.getResultList()
-			.stream()
-			.findAny()
-			.orElseGet(() -> new Document(documentType, documentContent));
-
-		if (image.getIdentity() == 0) {
-			try {
-				entityManager.persist(image);
+		final Document image;
+		try {
+			image = DocumentContents.findOrInsert(entityManager, documentType, documentContent);
 
-				entityManager.getTransaction().commit();
-			} catch (final RollbackException e) {
-				throw new ClientErrorException(Status.CONFLICT);
-			} finally {
-				entityManager.getTransaction().begin();
-			}
+			entityManager.getTransaction().commit();
+		} catch (final PersistenceException e) {
+			if (entityManager.getTransaction().isActive()) entityManager.getTransaction().rollback();
+			throw new ClientErrorException(Status.CONFLICT);
+		} finally {
+			if (!entityManager.getTransaction().isActive()) entityManager.getTransaction().begin();
 		}
 
 		recipe.setAvatar(image);
@@ -343,6 +444,8 @@ public class RecipeService {
 			throw new ClientErrorException(Status.BAD_REQUEST);
 		}
 
+		recipe.updateDietFlags(ingredients);
+
 		try {
 			ingredients.stream().filter(ingredient -> ingredient.getIdentity() == 0).forEach(ingredient -> entityManager.persist(ingredient));
 			recipe.getIngredients().stream().filter(ingredient -> !ingredients.contains(ingredient)).forEach(ingredient -> entityManager.remove(ingredient));
@@ -355,11 +458,6 @@ public class RecipeService {
 			if (!entityManager.getTransaction().isActive()) entityManager.getTransaction().begin();
 		}
 
-		// whenever our modifications cause the mirror relationship set of an entity to be
-		// modified, we need to remove said entity from the 2nd level case -> cache eviction!
-		final Cache cache = entityManager.getEntityManagerFactory().getCache();
-		cache.evict(Recipe.class, recipe.getIdentity());
-
 		return recipe.getIdentity();
 	}
 
@@ -394,11 +492,8 @@ public class RecipeService {
 		final Person requester = entityManager.find(Person.class, requesterIdentity);
 		if (requester == null || (recipe.getOwner() != null && requester.getIdentity() != recipe.getOwner().getIdentity() && requester.getGroup() != Person.Group.ADMIN)) throw new ClientErrorException(Status.FORBIDDEN);
 
-		final Set<Document> documents = LongStream
-			.of(illustrationReferences)
-			.mapToObj(reference -> entityManager.find(Document.class, reference))
-			.filter(document -> document != null)
-			.collect(Collectors.toSet());
+		final List<Long> documentIdentities = LongStream.of(illustrationReferences).boxed().collect(Collectors.toList());
+		final Set<Document> documents = new HashSet<>(EntityLoader.load(entityManager, Document.class, documentIdentities));
 
 		recipe.getIllustrations().retainAll(documents);
 		recipe.getIllustrations().addAll(documents);
@@ -413,4 +508,104 @@ public class RecipeService {
 
 		return recipe.getIdentity();
 	}
+
+
+
+	/**
+	 * Instances of this class import recipes, including their ingredients, from JSON records.
+	 */
+	static private class RecipeImporter implements BulkImports.RecordImporter {
+		private final long ownerIdentity;
+		private final Map<String,IngredientType> types;
+		private Person owner;
+		private Document avatar;
+
+
+		/**
+		 * Initializes a new instance.
+		 * @param ownerIdentity the identity of the owner of the imported recipes
+		 */
+		public RecipeImporter (final long ownerIdentity) {
+			this.ownerIdentity = ownerIdentity;
+			this.types = new HashMap<>();
+		}
+
+
+		/**
+		 * {@inheritDoc} Resolves the ingredient types of all given records using a single query, and
+		 * reloads the owner and default avatar, as the entity manager is cleared between batches.
+		 */
+		public void prepare (final EntityManager entityManager, final List<Map<String,Object>> records) throws PersistenceException {
+			final Set<String> aliases = new HashSet<>();
+			for (final Map<String,Object> record : records) {
+				if (!(record.get("ingredients") instanceof List)) continue;
+
+				for (final Object ingredient : (List<?>) record.get("ingredients"))
+					if (ingredient instanceof Map && ((Map<?,?>) ingredient).get("type") instanceof String)
+						aliases.add((String) ((Map<?,?>) ingredient).get("type"));
+			}
+
+			this.owner = entityManager.find(Person.class, this.ownerIdentity);
+			this.avatar = entityManager.find(Document.class, 1L);
+			this.types.clear();
+			if (!aliases.isEmpty()) {
+				final TypedQuery<IngredientType> query = entityManager.createQuery(QUERY_TYPES_BY_ALIAS, IngredientType.class);
+				for (final IngredientType type : query.setParameter("aliases", aliases).getResultList())
+					this.types.put(type.getAlias(), type);
+			}
+		}
+
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void importRecord (final EntityManager entityManager, final Map<String,Object> record) throws NullPointerException, IllegalArgumentException, ClassCastException, PersistenceException {
+			if (this.owner == null | this.avatar == null) throw new PersistenceException("owner or default avatar missing");
+
+			final Recipe recipe = new Recipe();
+			recipe.setOwner(this.owner);
+			recipe.setAvatar(this.avatar);
+			recipe.setTitle(text(record, "title", true, 128));
+			recipe.setCategory(Recipe.Category.valueOf(text(record, "category", true, 64)));
+			recipe.setDescription(text(record, "description", false, 4094));
+			recipe.setInstruction(text(record, "instruction", false, 4094));
+
+			final List<Ingredient> ingredients = new ArrayList<>();
+			for (final Object element : (List<?>) Objects.requireNonNull(record.get("ingredients"), "ingredients")) {
+				final Map<?,?> map = (Map<?,?>) element;
+				final IngredientType type = this.types.get((String) Objects.requireNonNull(map.get("type"), "type"));
+				if (type == null) throw new IllegalArgumentException("unknown ingredient type " + map.get("type"));
+
+				final Ingredient ingredient = new Ingredient(recipe);
+				ingredient.setAmount(((Number) Objects.requireNonNull(map.get("amount"), "amount")).floatValue());
+				ingredient.setUnit(Unit.valueOf((String) Objects.requireNonNull(map.get("unit"), "unit")));
+				ingredient.setType(type);
+				ingredients.add(ingredient);
+			}
+			recipe.updateDietFlags(ingredients);
+
+			entityManager.persist(recipe);
+			for (final Ingredient ingredient : ingredients)
+				entityManager.persist(ingredient);
+		}
+
+
+		/**
+		 * Returns the validated text property of the given record.
+		 * @param record the record
+		 * @param key the property key
+		 * @param required whether or not the property is required
+		 * @param maxLength the maximum text length
+		 * @return the text, or {@code null} for none
+		 * @throws NullPointerException if the property is required but missing
+		 * @throws IllegalArgumentException if the text is blank but required, or too long
+		 * @throws ClassCastException if the property value is not a text
+		 */
+		static private String text (final Map<String,Object> record, final String key, final boolean required, final int maxLength) throws NullPointerException, IllegalArgumentException, ClassCastException {
+			final String text = (String) (required ? Objects.requireNonNull(record.get(key), key) : record.get(key));
+			if (required && text.trim().isEmpty()) throw new IllegalArgumentException(key + " must not be blank");
+			if (text != null && text.length() > maxLength) throw new IllegalArgumentException(key + " must not exceed " + maxLength + " characters");
+			return text;
+		}
+	}
 }
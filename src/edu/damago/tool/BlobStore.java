@@ -0,0 +1,51 @@
+package edu.damago.tool;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+
+/**
+ * Content-addressed storage for binary large objects. Blobs are identified by a hexadecimal key, typically the hash code
+ * of their content; storing a blob under a key that is already present therefore does not change the stored content.
+ */
+@Copyright(year = 2026, holders = "Sascha Baumeister")
+public interface BlobStore {
+
+	/**
+	 * Stores the content of the given file under the given key. The file may be consumed by this operation,
+	 * i.e. it may no longer exist afterwards.
+	 * @param key the hexadecimal key
+	 * @param file the content file
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 * @throws IllegalArgumentException if the given key is not a valid hexadecimal key
+	 * @throws IOException if there is an I/O related problem
+	 */
+	void put (String key, Path file) throws NullPointerException, IllegalArgumentException, IOException;
+
+
+	/**
+	 * Transfers the content stored under the given key into the given sink.
+	 * @param key the hexadecimal key
+	 * @param sink the sink
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 * @throws IllegalArgumentException if the given key is not a valid hexadecimal key
+	 * @throws IOException if there is no content stored under the given key, or if there is an I/O related problem
+	 */
+	void get (String key, OutputStream sink) throws NullPointerException, IllegalArgumentException, IOException;
+
+
+	/**
+	 * Transfers the given slice of the content stored under the given key into the given sink. Slices reaching beyond
+	 * the end of the content are truncated accordingly.
+	 * @param key the hexadecimal key
+	 * @param offset the zero-based offset of the slice's first byte
+	 * @param length the maximum length of the slice
+	 * @param sink the sink
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 * @throws IllegalArgumentException if the given key is not a valid hexadecimal key, or if the given offset
+	 * 		or length is negative
+	 * @throws IOException if there is no content stored under the given key, or if there is an I/O related problem
+	 */
+	void get (String key, long offset, long length, OutputStream sink) throws NullPointerException, IllegalArgumentException, IOException;
+}
@@ -0,0 +1,107 @@
+package edu.damago.tool;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.persistence.internal.sessions.AbstractSession;
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.sessions.SessionProfiler;
+import org.eclipse.persistence.sessions.SessionProfilerAdapter;
+
+
+/**
+ * EclipseLink session profiler that counts 2nd level cache hits and misses, both in total and per entity type. In contrast
+ * to EclipseLink's own performance monitor, it neither times operations nor dumps it's statistics into the log, which keeps
+ * it's overhead low enough for production use.
+ */
+@Copyright(year = 2026, holders = "Sascha Baumeister")
+public class CacheStatisticsProfiler extends SessionProfilerAdapter {
+	private final LongAdder hitCount;
+	private final LongAdder missCount;
+	private final Map<String,LongAdder> hitCounts;
+	private final Map<String,LongAdder> missCounts;
+
+
+	/**
+	 * Initializes a new instance.
+	 */
+	public CacheStatisticsProfiler () {
+		this.hitCount = new LongAdder();
+		this.missCount = new LongAdder();
+		this.hitCounts = new ConcurrentHashMap<>();
+		this.missCounts = new ConcurrentHashMap<>();
+	}
+
+
+	/**
+	 * Returns the number of cache hits.
+	 * @return the cache hit count
+	 */
+	public long getHitCount () {
+		return this.hitCount.sum();
+	}
+
+
+	/**
+	 * Returns the number of cache misses.
+	 * @return the cache miss count
+	 */
+	public long getMissCount () {
+		return this.missCount.sum();
+	}
+
+
+	/**
+	 * Returns the number of cache hits per entity type, for queries with known reference classes.
+	 * @return the cache hit counts by entity type name
+	 */
+	public Map<String,Long> getHitCounts () {
+		return snapshot(this.hitCounts);
+	}
+
+
+	/**
+	 * Returns the number of cache misses per entity type, for queries with known reference classes.
+	 * @return the cache miss counts by entity type name
+	 */
+	public Map<String,Long> getMissCounts () {
+		return snapshot(this.missCounts);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void occurred (final String operationName, final AbstractSession session) {
+		this.occurred(operationName, null, session);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void occurred (final String operationName, final DatabaseQuery query, final AbstractSession session) {
+		if (SessionProfiler.CacheHits.equals(operationName)) {
+			this.hitCount.increment();
+			if (query != null && query.getReferenceClass() != null) this.hitCounts.computeIfAbsent(query.getReferenceClass().getSimpleName(), key -> new LongAdder()).increment();
+		} else if (SessionProfiler.CacheMisses.equals(operationName)) {
+			this.missCount.increment();
+			if (query != null && query.getReferenceClass() != null) this.missCounts.computeIfAbsent(query.getReferenceClass().getSimpleName(), key -> new LongAdder()).increment();
+		}
+	}
+
+
+	/**
+	 * Returns a sorted snapshot of the given counters.
+	 * @param counters the counters
+	 * @return the counter values by key
+	 */
+	static private Map<String,Long> snapshot (final Map<String,LongAdder> counters) {
+		final Map<String,Long> snapshot = new TreeMap<>();
+		counters.forEach((key, counter) -> snapshot.put(key, counter.sum()));
+		return snapshot;
+	}
+}
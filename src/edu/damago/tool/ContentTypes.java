@@ -1,11 +1,26 @@
 package edu.damago.tool;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 
 /**
- * Facade for content type (MIME type) related operations.
+ * Facade for content type (MIME type) related operations. Accept headers are parsed into media ranges once, and then
+ * cached by header value, as clients tend to send the same handful of accept headers over and over again. Media range
+ * parameters other than the quality, like {@code level=1} in {@code text/html;level=1;q=0.3}, are retained: such a range
+ * only matches content types carrying all of it's parameters with equal values, and takes precedence over ranges with
+ * fewer parameters. Parameters following the quality are accept extensions, and are ignored.
  */
 @Copyright(year = 2023, holders = "Sascha Baumeister")
 public class ContentTypes {
+	static private final int ACCEPT_CACHE_CAPACITY = 256;
+	static private final long ACCEPT_CACHE_TIME_TO_LIVE = 3_600_000;
+	static private final ExpiringCache<String,MediaRange[]> ACCEPT_CACHE = new ExpiringCache<>(ACCEPT_CACHE_CAPACITY, ACCEPT_CACHE_TIME_TO_LIVE);
+
 
 	/**
 	 * Prevents external instantiation.
@@ -15,7 +30,7 @@ public class ContentTypes {
 
 	/**
 	 * Returns whether or not the given content type is compatible to at least one of the given
-	 * acceptable types.
+	 * acceptable types, with said type not being excluded by a quality of zero.
 	 * @param contentType the content type
 	 * @param acceptHeader the accept header value
 	 * @return true if the given content type is compatible to at least one of the types
@@ -23,17 +38,200 @@ public class ContentTypes {
 	 * @throws NullPointerException if any of the given arguments is {@code null}
 	 */
 	static public boolean isAcceptable (final String contentType, final String acceptHeader) throws NullPointerException {
-		for (String acceptableType : acceptHeader.trim().split("\\s*,\\s*")) {
-			acceptableType = acceptableType.trim();
-			if (acceptableType.contains(";")) acceptableType = acceptableType.split("\\s*;\\s*")[0];
+		return quality(contentType, acceptHeader) > 0;
+	}
+
+
+	/**
+	 * Returns the quality the given accept header assigns to the given content type, which is the quality of the most
+	 * specific media range matching said type, including it's parameters.
+	 * @param contentType the content type
+	 * @param acceptHeader the accept header value
+	 * @return the quality within range [0, 1], with zero indicating that the given content type is not acceptable
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 */
+	static public double quality (final String contentType, final String acceptHeader) throws NullPointerException {
+		final int delimiterPosition = contentType.indexOf(';');
+		final String mediaType = (delimiterPosition == -1 ? contentType : contentType.substring(0, delimiterPosition)).trim();
+		final Map<String,String> parameters = delimiterPosition == -1 ? Collections.emptyMap() : parseParameters(contentType.substring(delimiterPosition + 1));
+
+		for (final MediaRange mediaRange : mediaRanges(acceptHeader))
+			if (mediaRange.matches(mediaType, parameters)) return mediaRange.quality;
+
+		return 0;
+	}
+
+
+	/**
+	 * Returns the content type among the given ones that is best matching the given accept header, i.e. the one with
+	 * the highest quality. Ties are resolved in favor of the content type given first.
+	 * @param acceptHeader the accept header value
+	 * @param contentTypes the content types
+	 * @return the best matching content type, or {@code null} for none
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 */
+	static public String bestMatch (final String acceptHeader, final String... contentTypes) throws NullPointerException {
+		String bestContentType = null;
+		double bestQuality = 0;
+		for (final String contentType : contentTypes) {
+			final double quality = quality(contentType, acceptHeader);
+			if (quality > bestQuality) {
+				bestContentType = contentType;
+				bestQuality = quality;
+			}
+		}
+
+		return bestContentType;
+	}
+
+
+	/**
+	 * Returns the media ranges of the given accept header, ordered by descending specificity.
+	 * @param acceptHeader the accept header value
+	 * @return the media ranges
+	 * @throws NullPointerException if the given argument is {@code null}
+	 */
+	static private MediaRange[] mediaRanges (final String acceptHeader) throws NullPointerException {
+		MediaRange[] mediaRanges = ACCEPT_CACHE.get(acceptHeader);
+		if (mediaRanges == null) {
+			mediaRanges = parseMediaRanges(acceptHeader);
+			ACCEPT_CACHE.put(acceptHeader, mediaRanges);
+		}
+
+		return mediaRanges;
+	}
+
+
+	/**
+	 * Parses the given accept header into media ranges, ordered by descending specificity, and then by descending
+	 * parameter count. Media ranges of equal specificity and parameter count keep their relative order.
+	 * @param acceptHeader the accept header value
+	 * @return the media ranges
+	 */
+	static private MediaRange[] parseMediaRanges (final String acceptHeader) {
+		final List<MediaRange> mediaRanges = new ArrayList<>();
+		for (int start = 0, stop; start < acceptHeader.length(); start = stop + 1) {
+			stop = acceptHeader.indexOf(',', start);
+			if (stop == -1) stop = acceptHeader.length();
+
+			final String element = acceptHeader.substring(start, stop);
+			final int delimiterPosition = element.indexOf(';');
+			final String mediaType = (delimiterPosition == -1 ? element : element.substring(0, delimiterPosition)).trim().toLowerCase();
+			if (mediaType.isEmpty()) continue;
 
-			if (acceptableType.equals(contentType) || acceptableType.equals("*/*")) return true;
-			if (acceptableType.length() < 2) continue;
+			double quality = 1;
+			Map<String,String> parameters = Collections.emptyMap();
+			if (delimiterPosition != -1) {
+				final String parameterText = element.substring(delimiterPosition + 1);
+				final int qualityPosition = qualityPosition(parameterText);
+				parameters = parseParameters(qualityPosition == -1 ? parameterText : parameterText.substring(0, qualityPosition));
 
-			if (acceptableType.startsWith("*/") && contentType.endsWith(acceptableType.substring(1))) return true;
-			if (acceptableType.endsWith("/*") && contentType.startsWith(acceptableType.substring(0, acceptableType.length() - 1))) return true;
+				if (qualityPosition != -1) {
+					final int qualityStop = parameterText.indexOf(';', qualityPosition);
+					final String qualityText = parameterText.substring(parameterText.indexOf('=', qualityPosition) + 1, qualityStop == -1 ? parameterText.length() : qualityStop);
+					try {
+						quality = Math.max(0, Math.min(1, Double.parseDouble(qualityText.trim())));
+					} catch (final NumberFormatException exception) {
+						// ignore malformed quality values
+					}
+				}
+			}
+
+			mediaRanges.add(new MediaRange(mediaType, parameters, quality));
 		}
 
-		return false;
+		mediaRanges.sort(Comparator.comparingInt((MediaRange mediaRange) -> mediaRange.specificity).thenComparingInt(mediaRange -> mediaRange.parameters.size()).reversed());
+		return mediaRanges.toArray(new MediaRange[mediaRanges.size()]);
+	}
+
+
+	/**
+	 * Returns the position of the quality parameter within the given parameter text.
+	 * @param parameterText the semicolon separated parameters
+	 * @return the position of the quality parameter's name, or {@code -1} for none
+	 */
+	static private int qualityPosition (final String parameterText) {
+		for (int start = 0, stop; start < parameterText.length(); start = stop + 1) {
+			stop = parameterText.indexOf(';', start);
+			if (stop == -1) stop = parameterText.length();
+
+			final int assignmentPosition = parameterText.indexOf('=', start);
+			if (assignmentPosition != -1 && assignmentPosition < stop && parameterText.substring(start, assignmentPosition).trim().equalsIgnoreCase("q")) return start;
+		}
+
+		return -1;
+	}
+
+
+	/**
+	 * Parses the given parameter text into a map of lower case parameter names to parameter values,
+	 * with quoted values being unquoted. Parameters lacking a value are ignored.
+	 * @param parameterText the semicolon separated parameters
+	 * @return the parameters
+	 */
+	static private Map<String,String> parseParameters (final String parameterText) {
+		final Map<String,String> parameters = new HashMap<>();
+		for (final String parameter : parameterText.split(";")) {
+			final int assignmentPosition = parameter.indexOf('=');
+			if (assignmentPosition == -1) continue;
+
+			final String name = parameter.substring(0, assignmentPosition).trim().toLowerCase();
+			String value = parameter.substring(assignmentPosition + 1).trim();
+			if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) value = value.substring(1, value.length() - 1);
+			if (!name.isEmpty()) parameters.put(name, value);
+		}
+
+		return parameters;
+	}
+
+
+
+	/**
+	 * Instances of this class represent media ranges of accept headers, like {@code image/*;q=0.8}.
+	 */
+	static private class MediaRange {
+		private final String mediaType;
+		private final Map<String,String> parameters;
+		private final double quality;
+		private final int specificity;
+
+
+		/**
+		 * Initializes a new instance.
+		 * @param mediaType the lower case media type, possibly containing wildcards
+		 * @param parameters the parameters except the quality, with lower case names
+		 * @param quality the quality
+		 */
+		public MediaRange (final String mediaType, final Map<String,String> parameters, final double quality) {
+			this.mediaType = mediaType;
+			this.parameters = parameters;
+			this.quality = quality;
+			this.specificity = mediaType.equals("*/*") ? 0 : (mediaType.startsWith("*/") | mediaType.endsWith("/*") ? 1 : 2);
+		}
+
+
+		/**
+		 * Returns whether or not the given media type is matched by this media range, which requires the given
+		 * parameters to contain all of this media range's parameters with equal values.
+		 * @param mediaType the media type, without parameters
+		 * @param parameters the media type's parameters, with lower case names
+		 * @return whether or not the given media type matches
+		 */
+		public boolean matches (final String mediaType, final Map<String,String> parameters) {
+			for (final Map.Entry<String,String> parameter : this.parameters.entrySet())
+				if (!parameter.getValue().equalsIgnoreCase(parameters.get(parameter.getKey()))) return false;
+
+			switch (this.specificity) {
+				case 0:
+					return true;
+				case 1:
+					final int length = this.mediaType.length() - 1;
+					return this.mediaType.startsWith("*/")
+						? mediaType.regionMatches(true, mediaType.length() - length, this.mediaType, 1, length)
+						: mediaType.regionMatches(true, 0, this.mediaType, 0, length);
+				default:
+					return mediaType.equalsIgnoreCase(this.mediaType);
+			}
+		}
 	}
 }
@@ -0,0 +1,104 @@
+package edu.damago.tool;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.TypedQuery;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+
+
+/**
+ * Facade for resolving entity identities into entities. Identities whose entities are present within the
+ * second level cache are resolved from said cache, while the remaining ones are fetched using batch queries
+ * with chunked {@code IN} clauses. This avoids the cost of one database round trip per identity, which is
+ * otherwise incurred when a list of identities is resolved by calling {@code EntityManager#find()} for each.
+ */
+@Copyright(year = 2026, holders = "Sascha Baumeister")
+public class EntityLoader {
+	static private final int CHUNK_SIZE = 500;
+	static private final String QUERY_TEMPLATE = "select e from %s as e where e.%s in :identities";
+
+
+	/**
+	 * Prevents external instantiation.
+	 */
+	private EntityLoader () {}
+
+
+	/**
+	 * Returns the entities matching the given identities, in the order of said identities. Identities
+	 * without a matching entity are skipped, and duplicate identities are resolved only once.
+	 * @param <T> the entity type
+	 * @param entityManager the entity manager
+	 * @param entityClass the entity class
+	 * @param identities the entity identities
+	 * @return the matching entities
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 * @throws IllegalArgumentException if the given class is not an entity class
+	 */
+	static public <T> List<T> load (final EntityManager entityManager, final Class<T> entityClass, final Collection<?> identities) throws NullPointerException, IllegalArgumentException {
+		final Cache cache = entityManager.getEntityManagerFactory().getCache();
+		final Set<Object> distinctIdentities = new LinkedHashSet<>(identities);
+		final Map<Object,T> entities = new HashMap<>();
+
+		final List<Object> uncachedIdentities = new ArrayList<>();
+		for (final Object identity : distinctIdentities) {
+			if (cache.contains(entityClass, identity)) {
+				final T entity = entityManager.find(entityClass, identity);
+				if (entity != null) entities.put(identity, entity);
+			} else {
+				uncachedIdentities.add(identity);
+			}
+		}
+
+		if (!uncachedIdentities.isEmpty()) {
+			final PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+			final TypedQuery<T> query = entityManager.createQuery(queryText(entityManager, entityClass), entityClass);
+
+			for (int offset = 0; offset < uncachedIdentities.size(); offset += CHUNK_SIZE) {
+				final List<Object> chunk = uncachedIdentities.subList(offset, Math.min(offset + CHUNK_SIZE, uncachedIdentities.size()));
+				for (final T entity : query.setParameter("identities", chunk).getResultList())
+					entities.put(persistenceUnitUtil.getIdentifier(entity), entity);
+			}
+		}
+
+		final List<T> result = new ArrayList<>(entities.size());
+		for (final Object identity : distinctIdentities) {
+			final T entity = entities.get(identity);
+			if (entity != null) result.add(entity);
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Returns the batch query text for the given entity class.
+	 * @param entityManager the entity manager
+	 * @param entityClass the entity class
+	 * @return the query text
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 * @throws IllegalArgumentException if the given class is not an entity class, or if
+	 * 		it's entities do not feature a single identity attribute
+	 */
+	static private String queryText (final EntityManager entityManager, final Class<?> entityClass) throws NullPointerException, IllegalArgumentException {
+		final EntityType<?> entityType = entityManager.getMetamodel().entity(entityClass);
+		final String identityName = entityType
+			.getSingularAttributes()
+			.stream()
+			.filter(SingularAttribute::isId)
+			.map(SingularAttribute::getName)
+			.findAny()
+			.orElseThrow(IllegalArgumentException::new);
+
+		return String.format(QUERY_TEMPLATE, entityType.getName(), identityName);
+	}
+}
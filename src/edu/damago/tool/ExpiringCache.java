@@ -0,0 +1,165 @@
+package edu.damago.tool;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+
+
+/**
+ * Thread-safe cache whose entries expire after a given time-to-live, and whose size is bounded by a given capacity. Lookups
+ * are lock-free; expired entries are removed lazily upon being looked up, and eagerly once the capacity is exceeded, which
+ * is also when the entries closest to expiry are evicted if there are still too many of them. Note that the capacity may
+ * therefore be exceeded briefly while concurrent insertions are taking place.
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+@Copyright(year = 2026, holders = "Sascha Baumeister")
+public class ExpiringCache<K,V> {
+	private final int capacity;
+	private final long timeToLive;
+	private final Map<K,Entry<V>> entries;
+
+
+	/**
+	 * Initializes a new instance.
+	 * @param capacity the maximum number of entries
+	 * @param timeToLive the time-to-live of entries in milliseconds
+	 * @throws IllegalArgumentException if the given capacity or time-to-live is not positive
+	 */
+	public ExpiringCache (final int capacity, final long timeToLive) throws IllegalArgumentException {
+		if (capacity <= 0 | timeToLive <= 0) throw new IllegalArgumentException();
+
+		this.capacity = capacity;
+		this.timeToLive = timeToLive;
+		this.entries = new ConcurrentHashMap<>();
+	}
+
+
+	/**
+	 * Returns the capacity.
+	 * @return the maximum number of entries
+	 */
+	public int getCapacity () {
+		return this.capacity;
+	}
+
+
+	/**
+	 * Returns the time-to-live.
+	 * @return the time-to-live of entries in milliseconds
+	 */
+	public long getTimeToLive () {
+		return this.timeToLive;
+	}
+
+
+	/**
+	 * Returns the number of entries, including expired ones that have not yet been removed.
+	 * @return the number of entries
+	 */
+	public int size () {
+		return this.entries.size();
+	}
+
+
+	/**
+	 * Returns the value associated with the given key.
+	 * @param key the key
+	 * @return the associated value, or {@code null} for none or if the associated entry has expired
+	 * @throws NullPointerException if the given argument is {@code null}
+	 */
+	public V get (final K key) throws NullPointerException {
+		final Entry<V> entry = this.entries.get(key);
+		if (entry == null) return null;
+		if (entry.expiry > System.currentTimeMillis()) return entry.value;
+
+		this.entries.remove(key, entry);
+		return null;
+	}
+
+
+	/**
+	 * Associates the given value with the given key, replacing any previously associated value.
+	 * @param key the key
+	 * @param value the value
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 */
+	public void put (final K key, final V value) throws NullPointerException {
+		if (value == null) throw new NullPointerException();
+
+		this.entries.put(key, new Entry<>(value, System.currentTimeMillis() + this.timeToLive));
+		if (this.entries.size() > this.capacity) this.evict();
+	}
+
+
+	/**
+	 * Removes the entry associated with the given key.
+	 * @param key the key
+	 * @return the previously associated value, or {@code null} for none
+	 * @throws NullPointerException if the given argument is {@code null}
+	 */
+	public V remove (final K key) throws NullPointerException {
+		final Entry<V> entry = this.entries.remove(key);
+		return entry == null ? null : entry.value;
+	}
+
+
+	/**
+	 * Removes all entries matching the given filter.
+	 * @param filter the filter, tested with each entry's key and value
+	 * @throws NullPointerException if the given argument is {@code null}
+	 */
+	public void removeIf (final BiPredicate<? super K,? super V> filter) throws NullPointerException {
+		if (filter == null) throw new NullPointerException();
+
+		this.entries.entrySet().removeIf(entry -> filter.test(entry.getKey(), entry.getValue().value));
+	}
+
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear () {
+		this.entries.clear();
+	}
+
+
+	/**
+	 * Removes all expired entries, and afterwards the entries closest to expiry (i.e. the least recently inserted ones)
+	 * until the number of entries falls to three quarters of this cache's capacity. Evicting in bulk amortizes the cost
+	 * of determining the eviction threshold across subsequent insertions.
+	 */
+	private void evict () {
+		final long now = System.currentTimeMillis();
+		this.entries.values().removeIf(entry -> entry.expiry <= now);
+
+		final long[] expiries = this.entries.values().stream().mapToLong(entry -> entry.expiry).sorted().toArray();
+		final int excess = expiries.length - this.capacity / 4 * 3;
+		if (expiries.length > this.capacity & excess > 0) {
+			final long threshold = expiries[excess - 1];
+			this.entries.values().removeIf(entry -> entry.expiry <= threshold);
+		}
+	}
+
+
+
+	/**
+	 * Instances of this class hold a cached value and it's expiry timestamp.
+	 * @param <V> the value type
+	 */
+	static private class Entry<V> {
+		private final V value;
+		private final long expiry;
+
+
+		/**
+		 * Initializes a new instance.
+		 * @param value the value
+		 * @param expiry the expiry timestamp in milliseconds since 1/1/1970
+		 */
+		public Entry (final V value, final long expiry) {
+			this.value = value;
+			this.expiry = expiry;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package edu.damago.tool;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Blob store keeping it's content within a local directory. Blob files are sharded into sub-directories named after the
+ * first two pairs of their key digits, in order to keep directory sizes manageable. Blobs are written atomically by moving
+ * a completely written temporary file into place, which guarantees that readers never observe partial content. Reads
+ * use {@link FileChannel#transferTo(long, long, WritableByteChannel)}, allowing the operating system to avoid copying
+ * blob content through user space where possible.
+ */
+@Copyright(year = 2026, holders = "Sascha Baumeister")
+public class FileBlobStore implements BlobStore {
+	static private final String KEY_PATTERN = "[0-9a-fA-F]{4,}";
+
+	private final Path directory;
+
+
+	/**
+	 * Initializes a new instance.
+	 * @param directory the root directory, created if not yet existing
+	 * @throws NullPointerException if the given argument is {@code null}
+	 * @throws IOException if the root directory cannot be created
+	 */
+	public FileBlobStore (final Path directory) throws NullPointerException, IOException {
+		this.directory = Files.createDirectories(directory.toAbsolutePath());
+	}
+
+
+	/**
+	 * Returns the root directory.
+	 * @return the root directory
+	 */
+	public Path getDirectory () {
+		return this.directory;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void put (final String key, final Path file) throws NullPointerException, IllegalArgumentException, IOException {
+		final Path path = this.path(key);
+		if (file == null) throw new NullPointerException();
+		if (Files.exists(path)) {
+			Files.deleteIfExists(file);
+			return;
+		}
+
+		Files.createDirectories(path.getParent());
+		try {
+			Files.move(file, path, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final AtomicMoveNotSupportedException exception) {
+			// the given file resides on a different file system, copy it into the
+			// target directory before renaming it atomically
+			final Path temporaryPath = Files.createTempFile(path.getParent(), key, ".tmp");
+			try {
+				Files.copy(file, temporaryPath, StandardCopyOption.REPLACE_EXISTING);
+				Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE);
+				Files.deleteIfExists(file);
+			} finally {
+				Files.deleteIfExists(temporaryPath);
+			}
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void get (final String key, final OutputStream sink) throws NullPointerException, IllegalArgumentException, IOException {
+		this.get(key, 0, Long.MAX_VALUE, sink);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void get (final String key, final long offset, final long length, final OutputStream sink) throws NullPointerException, IllegalArgumentException, IOException {
+		final Path path = this.path(key);
+		if (sink == null) throw new NullPointerException();
+		if (offset < 0 | length < 0) throw new IllegalArgumentException();
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final WritableByteChannel target = Channels.newChannel(sink);
+			final long limit = Math.min(channel.size(), offset + Math.min(length, Long.MAX_VALUE - offset));
+			long position = offset;
+			while (position < limit)
+				position += channel.transferTo(position, limit - position, target);
+		}
+	}
+
+
+	/**
+	 * Returns the path of the blob file for the given key.
+	 * @param key the hexadecimal key
+	 * @return the blob file path
+	 * @throws NullPointerException if the given argument is {@code null}
+	 * @throws IllegalArgumentException if the given key is not a valid hexadecimal key
+	 */
+	private Path path (final String key) throws NullPointerException, IllegalArgumentException {
+		if (!key.matches(KEY_PATTERN)) throw new IllegalArgumentException(key);
+
+		final String normalizedKey = key.toLowerCase();
+		return this.directory
+			.resolve(normalizedKey.substring(0, 2))
+			.resolve(normalizedKey.substring(2, 4))
+			.resolve(normalizedKey);
+	}
+}
@@ -1,13 +1,20 @@
 package edu.damago.tool;
 
-import static java.lang.Character.forDigit;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
 
 
 /**
- * This facade provides operations to calculate MD5, SHA1, SHA2 and SHA3 hash codes.
+ * This facade provides operations to calculate MD5, SHA1, SHA2 and SHA3 hash codes. Message digests are pooled per thread
+ * and algorithm, which avoids the provider lookup and allocation of {@link MessageDigest#getInstance(String)} per hash
+ * calculation. SHA2 and SHA3 hash codes may additionally be calculated from byte buffers and input streams, which allows
+ * large content to be hashed without copying it into a byte array as a whole.
  */
 @Copyright(year = 2017, holders = "Sascha Baumeister")
 public class HashCodes {
@@ -22,6 +29,9 @@ public class HashCodes {
 	static private final String SHA3_384_ALGORITHM = "SHA3-384";
 	static private final String SHA3_512_ALGORITHM = "SHA3-512";
 	static private final byte[] EMPTY = new byte[0];
+	static private final char[] HEXADECIMAL_DIGITS = "0123456789abcdef".toCharArray();
+	static private final int BUFFER_SIZE = 0x10000;
+	static private final ThreadLocal<Map<String,MessageDigest>> MESSAGE_DIGESTS = ThreadLocal.withInitial(HashMap::new);
 	static private byte[] MD5_DEFAULT = md5HashCode(EMPTY);
 	static private byte[] SHA1_DEFAULT = sha1HashCode(EMPTY);
 	static private byte[] SHA2_224_DEFAULT = sha2HashCode(224, EMPTY);
@@ -40,11 +50,7 @@ public class HashCodes {
 	 * @return the corresponding MD5 hash code
 	 */
 	static public byte[] md5HashCode (final byte[] content) {
-		try {
-			return content == null ? MD5_DEFAULT.clone() : MessageDigest.getInstance(MD5_ALGORITHM).digest(content);
-		} catch (final NoSuchAlgorithmException exception) {
-			throw new AssertionError(exception);
-		}
+		return content == null ? MD5_DEFAULT.clone() : messageDigest(MD5_ALGORITHM).digest(content);
 	}
 
 
@@ -54,11 +60,7 @@ public class HashCodes {
 	 * @return the corresponding SHA1 hash code
 	 */
 	static public byte[] sha1HashCode (final byte[] content) {
-		try {
-			return content == null ? SHA1_DEFAULT.clone() : MessageDigest.getInstance(SHA1_ALGORITHM).digest(content);
-		} catch (final NoSuchAlgorithmException exception) {
-			throw new AssertionError(exception);
-		}
+		return content == null ? SHA1_DEFAULT.clone() : messageDigest(SHA1_ALGORITHM).digest(content);
 	}
 
 
@@ -70,34 +72,47 @@ public class HashCodes {
 	 * @throws IllegalArgumentException if the given bit length is neither 224, nor 256, nor 384, nor 512
 	 */
 	static public byte[] sha2HashCode (final int bitLength, final byte[] content) throws IllegalArgumentException {
-		final byte[] defaultHash;
-		final String algorithm;
-		switch (bitLength) {
-			case 224:
-				defaultHash = SHA2_224_DEFAULT;
-				algorithm = SHA2_224_ALGORITHM;
-				break;
-			case 256:
-				defaultHash = SHA2_256_DEFAULT;
-				algorithm = SHA2_256_ALGORITHM;
-				break;
-			case 384:
-				defaultHash = SHA2_384_DEFAULT;
-				algorithm = SHA2_384_ALGORITHM;
-				break;
-			case 512:
-				defaultHash = SHA2_512_DEFAULT;
-				algorithm = SHA2_512_ALGORITHM;
-				break;
-			default:
-				throw new IllegalArgumentException();
-		}
+		final String algorithm = sha2Algorithm(bitLength);
+		return content == null ? sha2Default(bitLength).clone() : messageDigest(algorithm).digest(content);
+	}
 
-		try {
-			return content == null ? defaultHash.clone() : MessageDigest.getInstance(algorithm).digest(content);
-		} catch (final NoSuchAlgorithmException exception) {
-			throw new AssertionError(exception);
-		}
+
+	/**
+	 * Returns the quasi-unique SHA2 hash of the given buffer's remaining content, which is consumed in the process.
+	 * @param bitLength the hash bit length, either 224, 256, 384 or 512
+	 * @param content the buffer
+	 * @return the corresponding SHA2 hash code
+	 * @throws NullPointerException if the given buffer is {@code null}
+	 * @throws IllegalArgumentException if the given bit length is neither 224, nor 256, nor 384, nor 512
+	 */
+	static public byte[] sha2HashCode (final int bitLength, final ByteBuffer content) throws NullPointerException, IllegalArgumentException {
+		if (content == null) throw new NullPointerException();
+
+		final MessageDigest messageDigest = messageDigest(sha2Algorithm(bitLength));
+		messageDigest.update(content);
+		return messageDigest.digest();
+	}
+
+
+	/**
+	 * Returns the quasi-unique SHA2 hash of the given stream's remaining content, which is consumed in the process.
+	 * Note that the given stream is not closed.
+	 * @param bitLength the hash bit length, either 224, 256, 384 or 512
+	 * @param content the stream
+	 * @return the corresponding SHA2 hash code
+	 * @throws NullPointerException if the given stream is {@code null}
+	 * @throws IllegalArgumentException if the given bit length is neither 224, nor 256, nor 384, nor 512
+	 * @throws IOException if there is an I/O related problem
+	 */
+	static public byte[] sha2HashCode (final int bitLength, final InputStream content) throws NullPointerException, IllegalArgumentException, IOException {
+		if (content == null) throw new NullPointerException();
+
+		final MessageDigest messageDigest = messageDigest(sha2Algorithm(bitLength));
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		for (int bytesRead = content.read(buffer); bytesRead != -1; bytesRead = content.read(buffer))
+			messageDigest.update(buffer, 0, bytesRead);
+
+		return messageDigest.digest();
 	}
 
 
@@ -109,34 +124,47 @@ public class HashCodes {
 	 * @throws IllegalArgumentException if the given bit length is neither 224, nor 256, nor 384, nor 512
 	 */
 	static public byte[] sha3HashCode (final int bitLength, final byte[] content) throws IllegalArgumentException {
-		final byte[] defaultHash;
-		final String algorithm;
-		switch (bitLength) {
-			case 224:
-				defaultHash = SHA3_224_DEFAULT;
-				algorithm = SHA3_224_ALGORITHM;
-				break;
-			case 256:
-				defaultHash = SHA3_256_DEFAULT;
-				algorithm = SHA3_256_ALGORITHM;
-				break;
-			case 384:
-				defaultHash = SHA3_384_DEFAULT;
-				algorithm = SHA3_384_ALGORITHM;
-				break;
-			case 512:
-				defaultHash = SHA3_512_DEFAULT;
-				algorithm = SHA3_512_ALGORITHM;
-				break;
-			default:
-				throw new IllegalArgumentException();
-		}
+		final String algorithm = sha3Algorithm(bitLength);
+		return content == null ? sha3Default(bitLength).clone() : messageDigest(algorithm).digest(content);
+	}
 
-		try {
-			return content == null ? defaultHash.clone() : MessageDigest.getInstance(algorithm).digest(content);
-		} catch (final NoSuchAlgorithmException exception) {
-			throw new AssertionError(exception);
-		}
+
+	/**
+	 * Returns the quasi-unique SHA3 hash of the given buffer's remaining content, which is consumed in the process.
+	 * @param bitLength the hash bit length, either 224, 256, 384 or 512
+	 * @param content the buffer
+	 * @return the corresponding SHA3 hash code
+	 * @throws NullPointerException if the given buffer is {@code null}
+	 * @throws IllegalArgumentException if the given bit length is neither 224, nor 256, nor 384, nor 512
+	 */
+	static public byte[] sha3HashCode (final int bitLength, final ByteBuffer content) throws NullPointerException, IllegalArgumentException {
+		if (content == null) throw new NullPointerException();
+
+		final MessageDigest messageDigest = messageDigest(sha3Algorithm(bitLength));
+		messageDigest.update(content);
+		return messageDigest.digest();
+	}
+
+
+	/**
+	 * Returns the quasi-unique SHA3 hash of the given stream's remaining content, which is consumed in the process.
+	 * Note that the given stream is not closed.
+	 * @param bitLength the hash bit length, either 224, 256, 384 or 512
+	 * @param content the stream
+	 * @return the corresponding SHA3 hash code
+	 * @throws NullPointerException if the given stream is {@code null}
+	 * @throws IllegalArgumentException if the given bit length is neither 224, nor 256, nor 384, nor 512
+	 * @throws IOException if there is an I/O related problem
+	 */
+	static public byte[] sha3HashCode (final int bitLength, final InputStream content) throws NullPointerException, IllegalArgumentException, IOException {
+		if (content == null) throw new NullPointerException();
+
+		final MessageDigest messageDigest = messageDigest(sha3Algorithm(bitLength));
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		for (int bytesRead = content.read(buffer); bytesRead != -1; bytesRead = content.read(buffer))
+			messageDigest.update(buffer, 0, bytesRead);
+
+		return messageDigest.digest();
 	}
 
 
@@ -190,7 +218,7 @@ public class HashCodes {
 	 * @return the hexadecimal text representation of the corresponding MD5 hash code
 	 */
 	static public String md5HashText (final byte[] content) {
-		return String.valueOf(toHexadecimal(md5HashCode(content)));
+		return toHexadecimal(md5HashCode(content));
 	}
 
 
@@ -200,7 +228,7 @@ public class HashCodes {
 	 * @return the hexadecimal text representation of the corresponding SHA1 hash code
 	 */
 	static public String sha1HashText (final byte[] content) {
-		return String.valueOf(toHexadecimal(sha1HashCode(content)));
+		return toHexadecimal(sha1HashCode(content));
 	}
 
 
@@ -212,7 +240,7 @@ public class HashCodes {
 	 * @throws IllegalArgumentException if the given bit length is neither 224, nor 256, nor 384, nor 512
 	 */
 	static public String sha2HashText (final int bitLength, final byte[] content) throws IllegalArgumentException {
-		return String.valueOf(toHexadecimal(sha2HashCode(bitLength, content)));
+		return toHexadecimal(sha2HashCode(bitLength, content));
 	}
 
 
@@ -224,7 +252,7 @@ public class HashCodes {
 	 * @throws IllegalArgumentException if the given bit length is neither 224, nor 256, nor 384, nor 512
 	 */
 	static public String sha3HashText (final int bitLength, final byte[] content) throws IllegalArgumentException {
-		return String.valueOf(toHexadecimal(sha3HashCode(bitLength, content)));
+		return toHexadecimal(sha3HashCode(bitLength, content));
 	}
 
 
@@ -280,15 +308,117 @@ public class HashCodes {
 	 * @return the positive hexadecimal number
 	 * @throws NullPointerException if the given argument is {@code null}
 	 */
-	static private String toHexadecimal (final byte[] bytes) throws NullPointerException {
-		final StringBuilder builder = new StringBuilder();
-		for (int index = 0; index < bytes.length; ++index) {
+	static public String toHexadecimal (final byte[] bytes) throws NullPointerException {
+		final char[] digits = new char[bytes.length << 1];
+		toHexadecimal(bytes, digits, 0);
+		return new String(digits);
+	}
+
+
+	/**
+	 * Writes the hexadecimal digits equivalent to the given bytes into the given target array,
+	 * beginning at the given offset. Two digits are written per byte.
+	 * @param bytes the bytes
+	 * @param target the target array
+	 * @param offset the target offset
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 * @throws ArrayIndexOutOfBoundsException if the given target array is too small
+	 */
+	static public void toHexadecimal (final byte[] bytes, final char[] target, final int offset) throws NullPointerException, ArrayIndexOutOfBoundsException {
+		for (int index = 0, position = offset; index < bytes.length; ++index) {
 			final int digits = bytes[index] & 0xff;
-			builder.append(forDigit((digits >>> 4) & 0xf, 16));
-			builder.append(forDigit((digits >>> 0) & 0xf, 16));
+			target[position++] = HEXADECIMAL_DIGITS[digits >>> 4];
+			target[position++] = HEXADECIMAL_DIGITS[digits & 0xf];
 		}
+	}
 
-		return builder.toString();
+
+	/**
+	 * Returns the SHA2 algorithm name for the given bit length.
+	 * @param bitLength the hash bit length, either 224, 256, 384 or 512
+	 * @return the algorithm name
+	 * @throws IllegalArgumentException if the given bit length is neither 224, nor 256, nor 384, nor 512
+	 */
+	static private String sha2Algorithm (final int bitLength) throws IllegalArgumentException {
+		switch (bitLength) {
+			case 224: return SHA2_224_ALGORITHM;
+			case 256: return SHA2_256_ALGORITHM;
+			case 384: return SHA2_384_ALGORITHM;
+			case 512: return SHA2_512_ALGORITHM;
+			default: throw new IllegalArgumentException();
+		}
+	}
+
+
+	/**
+	 * Returns the SHA2 hash code of empty content for the given bit length.
+	 * @param bitLength the hash bit length, either 224, 256, 384 or 512
+	 * @return the default hash code
+	 * @throws IllegalArgumentException if the given bit length is neither 224, nor 256, nor 384, nor 512
+	 */
+	static private byte[] sha2Default (final int bitLength) throws IllegalArgumentException {
+		switch (bitLength) {
+			case 224: return SHA2_224_DEFAULT;
+			case 256: return SHA2_256_DEFAULT;
+			case 384: return SHA2_384_DEFAULT;
+			case 512: return SHA2_512_DEFAULT;
+			default: throw new IllegalArgumentException();
+		}
+	}
+
+
+	/**
+	 * Returns the SHA3 algorithm name for the given bit length.
+	 * @param bitLength the hash bit length, either 224, 256, 384 or 512
+	 * @return the algorithm name
+	 * @throws IllegalArgumentException if the given bit length is neither 224, nor 256, nor 384, nor 512
+	 */
+	static private String sha3Algorithm (final int bitLength) throws IllegalArgumentException {
+		switch (bitLength) {
+			case 224: return SHA3_224_ALGORITHM;
+			case 256: return SHA3_256_ALGORITHM;
+			case 384: return SHA3_384_ALGORITHM;
+			case 512: return SHA3_512_ALGORITHM;
+			default: throw new IllegalArgumentException();
+		}
+	}
+
+
+	/**
+	 * Returns the SHA3 hash code of empty content for the given bit length.
+	 * @param bitLength the hash bit length, either 224, 256, 384 or 512
+	 * @return the default hash code
+	 * @throws IllegalArgumentException if the given bit length is neither 224, nor 256, nor 384, nor 512
+	 */
+	static private byte[] sha3Default (final int bitLength) throws IllegalArgumentException {
+		switch (bitLength) {
+			case 224: return SHA3_224_DEFAULT;
+			case 256: return SHA3_256_DEFAULT;
+			case 384: return SHA3_384_DEFAULT;
+			case 512: return SHA3_512_DEFAULT;
+			default: throw new IllegalArgumentException();
+		}
+	}
+
+
+	/**
+	 * Returns the message digest for the given algorithm that is pooled within the current thread, after resetting it.
+	 * Note that the result must neither be shared with other threads, nor be used after calling another operation of
+	 * this facade.
+	 * @param algorithm the algorithm name
+	 * @return the message digest
+	 */
+	static private MessageDigest messageDigest (final String algorithm) {
+		final MessageDigest messageDigest = MESSAGE_DIGESTS.get().computeIfAbsent(algorithm, key -> {
+			try {
+				return MessageDigest.getInstance(key);
+			} catch (final NoSuchAlgorithmException exception) {
+				throw new AssertionError(exception);
+			}
+		});
+
+		messageDigest.reset();
+		return messageDigest;
 	}
 
 
@@ -0,0 +1,237 @@
+package edu.damago.tool;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import org.eclipse.persistence.descriptors.ClassDescriptor;
+import org.eclipse.persistence.indirection.IndirectCollectionsFactory;
+import org.eclipse.persistence.indirection.IndirectContainer;
+import org.eclipse.persistence.indirection.IndirectList;
+import org.eclipse.persistence.indirection.IndirectSet;
+import org.eclipse.persistence.internal.sessions.AbstractSession;
+import org.eclipse.persistence.mappings.CollectionMapping;
+import org.eclipse.persistence.mappings.DatabaseMapping;
+import org.eclipse.persistence.sessions.IdentityMapAccessor;
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+import org.eclipse.persistence.sessions.changesets.ChangeRecord;
+import org.eclipse.persistence.sessions.changesets.ObjectChangeSet;
+import org.eclipse.persistence.sessions.changesets.ObjectReferenceChangeRecord;
+import org.eclipse.persistence.sessions.changesets.UnitOfWorkChangeSet;
+
+
+/**
+ * EclipseLink session event listener that keeps the inverse relationship sets of entities within the 2nd level cache
+ * coherent, i.e. the collection sides of bidirectional one-to-many relationships declared using {@code mappedBy}. Such sets
+ * are not maintained by the persistence provider when their owning side changes, which otherwise requires evicting the
+ * affected entities, and therefore reloading their entire sets. Instead, once a transaction's changes have been merged into
+ * the shared cache, this listener adds new entities to the cached sets of the entities they reference, removes deleted ones,
+ * and moves reassigned ones. Cached sets are never modified while other threads may be reading them; instead, they are
+ * replaced by modified copies. Sets that have not been loaded yet are left alone, and cached entities that cannot be updated
+ * for some reason are invalidated as a fallback. Register it using the persistence unit property
+ * {@code eclipselink.session-event-listener}.
+ */
+@Copyright(year = 2026, holders = "Sascha Baumeister")
+public class InverseRelationshipCacheMaintainer extends SessionEventAdapter {
+	static private final String CHANGE_SET_PROPERTY = "UnitOfWorkChangeSet";
+
+	private volatile List<InverseRelationship> inverseRelationships;
+
+
+	/**
+	 * Initializes a new instance.
+	 */
+	public InverseRelationshipCacheMaintainer () {
+		this.inverseRelationships = new ArrayList<>();
+	}
+
+
+	/**
+	 * {@inheritDoc} Collects the inverse relationships of all descriptors, as these are fully initialized by now.
+	 */
+	@Override
+	public void postLogin (final SessionEvent event) {
+		final List<InverseRelationship> inverseRelationships = new ArrayList<>();
+		for (final ClassDescriptor descriptor : event.getSession().getDescriptors().values()) {
+			for (final DatabaseMapping mapping : descriptor.getMappings()) {
+				if (!(mapping instanceof CollectionMapping) || ((CollectionMapping) mapping).getMappedBy() == null) continue;
+
+				final CollectionMapping collectionMapping = (CollectionMapping) mapping;
+				final DatabaseMapping referenceMapping = collectionMapping.getReferenceDescriptor().getMappingForAttributeName(collectionMapping.getMappedBy());
+				if (referenceMapping != null) inverseRelationships.add(new InverseRelationship(referenceMapping, collectionMapping));
+			}
+		}
+
+		this.inverseRelationships = inverseRelationships;
+	}
+
+
+	/**
+	 * {@inheritDoc} Updates the cached inverse relationship sets affected by the merged changes.
+	 */
+	@Override
+	public void postMergeUnitOfWorkChangeSet (final SessionEvent event) {
+		final AbstractSession unitOfWork = (AbstractSession) event.getSession();
+		final UnitOfWorkChangeSet changeSet = (UnitOfWorkChangeSet) event.getProperty(CHANGE_SET_PROPERTY);
+		if (changeSet == null || !unitOfWork.isUnitOfWork() || unitOfWork.getParent().isUnitOfWork()) return;
+
+		final IdentityMapAccessor cache = unitOfWork.getParent().getIdentityMapAccessor();
+		for (final InverseRelationship inverseRelationship : this.inverseRelationships) {
+			for (final Object element : changeSet.getAllChangeSets().keySet()) {
+				final ObjectChangeSet objectChanges = (ObjectChangeSet) element;
+				if (!inverseRelationship.appliesTo(objectChanges, unitOfWork)) continue;
+
+				final Object clone = changeSet.getUOWCloneForObjectChangeSet(objectChanges);
+				if (clone == null) continue;
+				final Object newParent = inverseRelationship.referenceMapping.getRealAttributeValueFromObject(clone, unitOfWork);
+
+				if (objectChanges.isNew()) {
+					inverseRelationship.add(cache, unitOfWork, newParent, objectChanges.getId());
+				} else {
+					final ChangeRecord changeRecord = objectChanges.getChangesForAttributeNamed(inverseRelationship.referenceMapping.getAttributeName());
+					if (!(changeRecord instanceof ObjectReferenceChangeRecord)) continue;
+
+					final Object oldParent = ((ObjectReferenceChangeRecord) changeRecord).getOldValue();
+					inverseRelationship.remove(cache, unitOfWork, oldParent, objectChanges.getId());
+					inverseRelationship.add(cache, unitOfWork, newParent, objectChanges.getId());
+				}
+			}
+
+			for (final Object element : changeSet.getDeletedObjects().keySet()) {
+				final ObjectChangeSet objectChanges = (ObjectChangeSet) element;
+				if (!inverseRelationship.appliesTo(objectChanges, unitOfWork)) continue;
+
+				final Object clone = changeSet.getUOWCloneForObjectChangeSet(objectChanges);
+				if (clone == null) {
+					inverseRelationship.invalidateParent(cache, unitOfWork.getParent(), objectChanges.getId());
+				} else {
+					final Object oldParent = inverseRelationship.referenceMapping.getRealAttributeValueFromObject(clone, unitOfWork);
+					inverseRelationship.remove(cache, unitOfWork, oldParent, objectChanges.getId());
+				}
+			}
+		}
+	}
+
+
+
+	/**
+	 * Instances of this class represent the inverse relationships of bidirectional one-to-many relationships.
+	 */
+	static private class InverseRelationship {
+		private final DatabaseMapping referenceMapping;
+		private final CollectionMapping collectionMapping;
+
+
+		/**
+		 * Initializes a new instance.
+		 * @param referenceMapping the owning side's mapping, i.e. the reference to the parent entity
+		 * @param collectionMapping the inverse side's mapping, i.e. the parent entity's collection
+		 */
+		public InverseRelationship (final DatabaseMapping referenceMapping, final CollectionMapping collectionMapping) {
+			this.referenceMapping = referenceMapping;
+			this.collectionMapping = collectionMapping;
+		}
+
+
+		/**
+		 * Returns whether or not the given changes concern an entity owning this relationship.
+		 * @param objectChanges the object changes
+		 * @param session the session
+		 * @return {@code true} if the changes concern an entity owning this relationship, {@code false} otherwise
+		 */
+		public boolean appliesTo (final ObjectChangeSet objectChanges, final AbstractSession session) {
+			final Class<?> ownerType = this.referenceMapping.getDescriptor().getJavaClass();
+			final Class<?> type = objectChanges.getClassType(session);
+			return type != null && ownerType.isAssignableFrom(type);
+		}
+
+
+		/**
+		 * Invalidates the cached parent entity of the cached child entity with the given identity, if both are cached.
+		 * @param cache the shared cache
+		 * @param session the session the cached entities belong to
+		 * @param childIdentity the child entity's identity
+		 */
+		public void invalidateParent (final IdentityMapAccessor cache, final AbstractSession session, final Object childIdentity) {
+			final Object child = cache.getFromIdentityMap(childIdentity, this.referenceMapping.getDescriptor().getJavaClass());
+			if (child == null) return;
+
+			final Object parent = this.referenceMapping.getRealAttributeValueFromObject(child, session);
+			if (parent != null) cache.invalidateObject(parent);
+		}
+
+
+		/**
+		 * Adds the cached child entity with the given identity to the cached collection of the given parent entity.
+		 * Invalidates the cached parent entity instead if the child entity is not cached itself.
+		 * @param cache the shared cache
+		 * @param session the session the parent entity belongs to
+		 * @param parent the parent entity, or {@code null} for none
+		 * @param childIdentity the child entity's identity
+		 */
+		public void add (final IdentityMapAccessor cache, final AbstractSession session, final Object parent, final Object childIdentity) {
+			if (parent == null) return;
+
+			final Object parentIdentity = session.getId(parent);
+			final Object child = cache.getFromIdentityMap(childIdentity, this.referenceMapping.getDescriptor().getJavaClass());
+			if (child == null) {
+				cache.invalidateObject(parentIdentity, this.collectionMapping.getDescriptor().getJavaClass());
+			} else {
+				this.update(cache, session, parentIdentity, childIdentity, child);
+			}
+		}
+
+
+		/**
+		 * Removes the child entity with the given identity from the cached collection of the given parent entity.
+		 * @param cache the shared cache
+		 * @param session the session the parent entity belongs to
+		 * @param parent the parent entity, or {@code null} for none
+		 * @param childIdentity the child entity's identity
+		 */
+		public void remove (final IdentityMapAccessor cache, final AbstractSession session, final Object parent, final Object childIdentity) {
+			if (parent == null) return;
+
+			this.update(cache, session, session.getId(parent), childIdentity, null);
+		}
+
+
+		/**
+		 * Replaces the cached collection of the parent entity with the given identity by a copy, from which the child entity
+		 * with the given identity is removed, and to which the given child entity is added if present. Invalidates the cached
+		 * parent entity instead if it's collection cannot be copied.
+		 * @param cache the shared cache
+		 * @param session the session
+		 * @param parentIdentity the parent entity's identity
+		 * @param childIdentity the child entity's identity
+		 * @param child the cached child entity to be added, or {@code null} for none
+		 */
+		@SuppressWarnings("unchecked")
+		private void update (final IdentityMapAccessor cache, final AbstractSession session, final Object parentIdentity, final Object childIdentity, final Object child) {
+			final Class<?> parentType = this.collectionMapping.getDescriptor().getJavaClass();
+			final Object parent = cache.getFromIdentityMap(parentIdentity, parentType);
+			if (parent == null) return;
+
+			// concurrent commits affecting the same parent entity must not lose each other's updates
+			synchronized (parent) {
+				final Object value = this.collectionMapping.getAttributeValueFromObject(parent);
+				if (value instanceof IndirectContainer && !((IndirectContainer) value).isInstantiated()) return;
+				if (!(value instanceof Collection)) {
+					cache.invalidateObject(parentIdentity, parentType);
+					return;
+				}
+
+				final Collection<Object> elements = (Collection<Object>) value;
+				final Collection<Object> copy = value instanceof IndirectList
+					? IndirectCollectionsFactory.createIndirectList(elements)
+					: (value instanceof IndirectSet ? IndirectCollectionsFactory.createIndirectSet(elements) : new HashSet<>(elements));
+				copy.removeIf(element -> Objects.equals(session.getId(element), childIdentity));
+				if (child != null) copy.add(child);
+
+				this.collectionMapping.setAttributeValueInObject(parent, copy);
+			}
+		}
+	}
+}
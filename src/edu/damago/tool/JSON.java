@@ -1,9 +1,11 @@
 package edu.damago.tool;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -14,6 +16,9 @@ import java.util.Map;
  */
 @Copyright(year = 2021, holders = "Sascha Baumeister")
 public class JSON {
+	static private final int MAX_DEPTH = 256;
+	static private final int BUFFER_SIZE = 0x2000;
+	static private final char[] HEXADECIMAL_DIGITS = "0123456789abcdef".toCharArray();
 
 	/**
 	 * Prevents external instantiation.
@@ -30,263 +35,551 @@ public class JSON {
 	 *         {@code Map} with {@code CharSequence} keys, or {@code Collection}, nor an {@code array}
 	 */
 	static public String stringify (final Object object) throws IllegalArgumentException {
-		if (object == null) return "null";
-		if (object instanceof Boolean | object instanceof Number) return object.toString();
-		if (object instanceof CharSequence) return "'" + object.toString().replace("'", "\\'").replace("\"", "\\\"").replace("\t", "\\t").replace("\n", "\\n") + "'";
-
 		final StringBuilder builder = new StringBuilder();
-		if (object instanceof Collection | object.getClass().isArray()) {
-			if (object instanceof Collection | object instanceof Object[]) {
-				final Object[] array = object instanceof Object[]
-					? (Object[]) object
-					: ((Collection<?>) object).toArray();
-
-				builder.append("[");
-				for (int index = 0; index < array.length; ++index) {
-					if (index > 0) builder.append(", ");
-					builder.append(stringify(array[index]));
-				}
-				builder.append("]");
-			} else if (object instanceof char[]) {
-				final char[] array = (char[]) object;
-				builder.append("[");
-				for (int index = 0; index < array.length; ++index) {
-					if (index > 0) builder.append(", ");
-					builder.append('"');
-					builder.append(array[index]);
-					builder.append('"');
-				}
-				builder.append("]");
-			} else if (object instanceof byte[]) {
-				builder.append(Arrays.toString((byte[]) object));
-			} else if (object instanceof short[]) {
-				builder.append(Arrays.toString((short[]) object));
-			} else if (object instanceof int[]) {
-				builder.append(Arrays.toString((int[]) object));
-			} else if (object instanceof long[]) {
-				builder.append(Arrays.toString((long[]) object));
-			} else if (object instanceof float[]) {
-				builder.append(Arrays.toString((float[]) object));
-			} else if (object instanceof double[]) {
-				builder.append(Arrays.toString((double[]) object));
-			} else {
-				builder.append(Arrays.toString((boolean[]) object));
+		try {
+			stringify(object, builder);
+		} catch (final IOException exception) {
+			throw new AssertionError(exception);
+		}
+
+		return builder.toString();
+	}
+
+
+	/**
+	 * Writes the JSON representation for the given object into the given sink. The representation is streamed directly
+	 * into the sink, without creating intermediate representations of nested elements; strings are escaped in a single
+	 * pass. Note that strings are single-quoted, in order to facilitate embedding JSON within double-quoted attributes.
+	 * @param object the object, or {@code null}
+	 * @param sink the sink
+	 * @throws NullPointerException if the given sink is {@code null}
+	 * @throws IllegalArgumentException if the given object, or any of it's constituents, is neither
+	 *         {@code null} nor an instance of {@code Boolean}, {@code Number}, {@code CharSequence},
+	 *         {@code Map} with {@code CharSequence} keys, or {@code Collection}, nor an {@code array}
+	 * @throws IOException if there is an I/O related problem
+	 */
+	static public void stringify (final Object object, final Appendable sink) throws NullPointerException, IllegalArgumentException, IOException {
+		if (sink == null) throw new NullPointerException();
+
+		if (object == null) {
+			sink.append("null");
+		} else if (object instanceof Boolean | object instanceof Number) {
+			sink.append(object.toString());
+		} else if (object instanceof CharSequence) {
+			stringifyText((CharSequence) object, sink);
+		} else if (object instanceof Collection) {
+			sink.append('[');
+			boolean first = true;
+			for (final Object element : (Collection<?>) object) {
+				if (!first) sink.append(", ");
+				stringify(element, sink);
+				first = false;
 			}
+			sink.append(']');
 		} else if (object instanceof Map) {
-			builder.append("{");
-
-			final Map<?,?> map = (Map<?,?>) object;
-			for (final Object key : map.keySet()) {
-				if (key == null | !(key instanceof CharSequence)) throw new IllegalArgumentException();
-				builder.append(stringify(key));
-				builder.append(": ");
-				builder.append(stringify(map.get(key)));
-				builder.append(", ");
+			sink.append('{');
+			boolean first = true;
+			for (final Map.Entry<?,?> entry : ((Map<?,?>) object).entrySet()) {
+				if (!(entry.getKey() instanceof CharSequence)) throw new IllegalArgumentException();
+				if (!first) sink.append(", ");
+				stringifyText((CharSequence) entry.getKey(), sink);
+				sink.append(": ");
+				stringify(entry.getValue(), sink);
+				first = false;
 			}
-
-			if (!map.isEmpty()) builder.delete(builder.length() - 2, builder.length());
-			builder.append("}");
+			sink.append('}');
+		} else if (object.getClass().isArray()) {
+			stringifyArray(object, sink);
 		} else {
 			throw new IllegalArgumentException();
 		}
+	}
 
-		return builder.toString();
+
+	/**
+	 * Writes the JSON representation for the given array into the given sink. The array's component type is
+	 * dispatched upon once, followed by a dedicated loop for each type of array.
+	 * @param array the array
+	 * @param sink the sink
+	 * @throws IllegalArgumentException if any of the given array's elements is not supported
+	 * @throws IOException if there is an I/O related problem
+	 */
+	static private void stringifyArray (final Object array, final Appendable sink) throws IllegalArgumentException, IOException {
+		sink.append('[');
+
+		if (array instanceof Object[]) {
+			final Object[] elements = (Object[]) array;
+			for (int index = 0; index < elements.length; ++index) {
+				if (index > 0) sink.append(", ");
+				stringify(elements[index], sink);
+			}
+		} else if (array instanceof char[]) {
+			final char[] elements = (char[]) array;
+			for (int index = 0; index < elements.length; ++index) {
+				if (index > 0) sink.append(", ");
+				stringifyText(String.valueOf(elements[index]), sink);
+			}
+		} else if (array instanceof long[]) {
+			final long[] elements = (long[]) array;
+			for (int index = 0; index < elements.length; ++index) {
+				if (index > 0) sink.append(", ");
+				sink.append(Long.toString(elements[index]));
+			}
+		} else if (array instanceof int[]) {
+			final int[] elements = (int[]) array;
+			for (int index = 0; index < elements.length; ++index) {
+				if (index > 0) sink.append(", ");
+				sink.append(Integer.toString(elements[index]));
+			}
+		} else if (array instanceof short[]) {
+			final short[] elements = (short[]) array;
+			for (int index = 0; index < elements.length; ++index) {
+				if (index > 0) sink.append(", ");
+				sink.append(Short.toString(elements[index]));
+			}
+		} else if (array instanceof byte[]) {
+			final byte[] elements = (byte[]) array;
+			for (int index = 0; index < elements.length; ++index) {
+				if (index > 0) sink.append(", ");
+				sink.append(Byte.toString(elements[index]));
+			}
+		} else if (array instanceof double[]) {
+			final double[] elements = (double[]) array;
+			for (int index = 0; index < elements.length; ++index) {
+				if (index > 0) sink.append(", ");
+				sink.append(Double.toString(elements[index]));
+			}
+		} else if (array instanceof float[]) {
+			final float[] elements = (float[]) array;
+			for (int index = 0; index < elements.length; ++index) {
+				if (index > 0) sink.append(", ");
+				sink.append(Float.toString(elements[index]));
+			}
+		} else {
+			final boolean[] elements = (boolean[]) array;
+			for (int index = 0; index < elements.length; ++index) {
+				if (index > 0) sink.append(", ");
+				sink.append(Boolean.toString(elements[index]));
+			}
+		}
+
+		sink.append(']');
+	}
+
+
+	/**
+	 * Writes the given text as single-quoted JSON string into the given sink, escaping quotes, backslashes,
+	 * and control characters in a single pass. Unescaped runs of characters are appended as a whole.
+	 * @param text the text
+	 * @param sink the sink
+	 * @throws IOException if there is an I/O related problem
+	 */
+	static private void stringifyText (final CharSequence text, final Appendable sink) throws IOException {
+		sink.append('\'');
+
+		int start = 0;
+		for (int index = 0; index < text.length(); ++index) {
+			final char character = text.charAt(index);
+			if (character >= 0x20 & character != '\'' & character != '"' & character != '\\') continue;
+
+			sink.append(text, start, index);
+			start = index + 1;
+			switch (character) {
+				case '\'': case '"': case '\\':
+					sink.append('\\').append(character);
+					break;
+				case '\t':
+					sink.append("\\t");
+					break;
+				case '\n':
+					sink.append("\\n");
+					break;
+				case '\r':
+					sink.append("\\r");
+					break;
+				case '\b':
+					sink.append("\\b");
+					break;
+				case '\f':
+					sink.append("\\f");
+					break;
+				default:
+					sink.append("\\u00").append(HEXADECIMAL_DIGITS[character >>> 4]).append(HEXADECIMAL_DIGITS[character & 0xf]);
+					break;
+			}
+		}
+
+		sink.append(text, start, text.length()).append('\'');
 	}
 
 
 	/**
 	 * Returns an object parsed from the given JSON representation. Depending on the given JSON,
-	 * the resulting object is either {@code null}, or a {@code Boolean} value, or a {@code Double}
+	 * the resulting object is either {@code null}, or a {@code Boolean} value, or a {@code Number}
 	 * value, or a {@code String} value, or a {@code List<Object>} value, or a
-	 * {@code Map<String,Object>} value.
+	 * {@code Map<String,Object>} value. Numbers are represented as {@code Long} values if they
+	 * are integral and within range, and as {@code Double} values otherwise. Beyond standard JSON,
+	 * single-quoted strings, trailing commas, {@code undefined}, {@code NaN} and {@code Infinity}
+	 * are accepted as well. The JSON is parsed in a single pass, with nesting being limited to
+	 * {@value #MAX_DEPTH} levels.
 	 * @param json the JSON representation
 	 * @return the object, or {@code null}
 	 * @throws NullPointerException if the given argument is {@code null}
-	 * @throws IllegalArgumentException if the argument is not valid JSON
+	 * @throws IllegalArgumentException if the argument is not valid JSON, or nested too deeply
 	 * @throws ClassCastException if the result is assigned to something not compatible to,
 	 * 			or cast to something different from classes {@code Object}, {@code Boolean},
-	 * 			{@code Double}, {@code String}, {@code Map<String,Object>}, or {@code List<Object>}
+	 * 			{@code Number}, {@code Long}, {@code Double}, {@code String}, {@code Map<String,Object>},
+	 * 			or {@code List<Object>}
 	 */
-	@SuppressWarnings("unchecked")
-	static public <T> T parse (String json) throws NullPointerException, IllegalArgumentException, ClassCastException {
-		json = json.trim();
-
-		if (json.isEmpty()) throw new IllegalArgumentException(json);
-		switch (json.charAt(0)) {
-			case 'n': case 'u':
-				return (T) parseVoid(json);				
-			case 't': case 'f':
-				return (T) parseBoolean(json);				
-			case '+': case '-': case '0': case '1': case '2': case '3': case '4': case '5': case '6': case '7': case '8': case '9': case '.': case 'E': case 'N': case 'I':   
-				return (T) parseNumber(json);
-			case '"': case '\'':
-				return (T) parseString(json);
-			case '[':
-				return (T) parseList(json);
-			case '{':
-				return (T) parseMap(json);
-			default:
-				throw new IllegalArgumentException(json);
+	static public <T> T parse (final CharSequence json) throws NullPointerException, IllegalArgumentException, ClassCastException {
+		final int bufferSize = Math.max(1, Math.min(BUFFER_SIZE, json.length()));
+		try {
+			return parse(new Parser(new StringReader(json.toString()), bufferSize));
+		} catch (final IOException exception) {
+			throw new AssertionError(exception);
 		}
 	}
 
 
 	/**
-	 * Converts the given JSON representation into the content of a newly created map.
-	 * @param json the JSON representation
-	 * @return the map
+	 * Returns an object parsed from the JSON representation read from the given source,
+	 * see {@link #parse(CharSequence)}. The source is read incrementally while parsing, which
+	 * avoids holding the JSON representation as a whole within the heap; it is read until it's
+	 * end in order to detect trailing content, but not closed.
+	 * @param source the source of the JSON representation
+	 * @return the object, or {@code null}
 	 * @throws NullPointerException if the given argument is {@code null}
-	 * @throws IllegalArgumentException if the given JSON does not represent a valid JSON map
+	 * @throws IllegalArgumentException if the JSON read is not valid, or nested too deeply
+	 * @throws ClassCastException if the result is assigned to something not compatible to,
+	 * 			or cast to something different from classes {@code Object}, {@code Boolean},
+	 * 			{@code Number}, {@code Long}, {@code Double}, {@code String}, {@code Map<String,Object>},
+	 * 			or {@code List<Object>}
+	 * @throws IOException if there is an I/O related problem
 	 */
-	static private Map<String,Object> parseMap (final String json) throws NullPointerException, IllegalArgumentException {
-		if (json.length() < 2 | !json.startsWith("{") | !json.endsWith("}")) throw new IllegalArgumentException(json);
-
-		final Map<String,Object> map = new HashMap<>();
-		for (int index = 1; index < json.length(); ++index) {
-			while (index < json.length() && Character.isWhitespace(json.charAt(index))) index += 1;
-			if (json.charAt(index) == '}') break;
-			if (json.charAt(index) != '"' & json.charAt(index) != '\'') throw new IllegalArgumentException(json);
-			int startIndex;
-
-			startIndex = index;
-			index = matchingDelimiterPosition(json, startIndex) + 1;
-			final String key = parseString(json.substring(startIndex, index));
-
-			while (index < json.length() && Character.isWhitespace(json.charAt(index))) index += 1;
-			if (json.charAt(index++) != ':') throw new IllegalArgumentException(json);
-			while (index < json.length() && Character.isWhitespace(json.charAt(index))) index += 1;
-
-			startIndex = index;
-			if (json.charAt(index) == '{' | json.charAt(index) == '[' | json.charAt(index) == '"' | json.charAt(index) == '\'')
-				index = matchingDelimiterPosition(json, startIndex) + 1;
-			else
-				while (index < json.length() && json.charAt(index) != ',' && json.charAt(index) != '}') index += 1;
-
-			final Object value = parse(json.substring(startIndex, index).trim());
-			map.put(key, value);
-
-			while (index < json.length() && Character.isWhitespace(json.charAt(index))) index += 1;
-			if (index < json.length() && json.charAt(index) != ',' && json.charAt(index) != '}') throw new IllegalArgumentException(json);
-		}
+	static public <T> T parse (final Reader source) throws NullPointerException, IllegalArgumentException, ClassCastException, IOException {
+		return parse(new Parser(source, BUFFER_SIZE));
+	}
+
 
-		return map;
+	/**
+	 * Returns an object parsed using the given parser.
+	 * @param parser the parser
+	 * @return the object, or {@code null}
+	 * @throws IllegalArgumentException if the JSON read is not valid, or nested too deeply
+	 * @throws IOException if there is an I/O related problem
+	 */
+	@SuppressWarnings("unchecked")
+	static private <T> T parse (final Parser parser) throws IllegalArgumentException, IOException {
+		final Object result = parser.parseValue(0);
+		parser.skipWhitespace();
+		if (parser.fill()) throw parser.error();
+		return (T) result;
 	}
 
 
+
 	/**
-	 * Converts the given JSON representation into the content of a newly created list.
-	 * @param json the JSON representation
-	 * @return the list
-	 * @throws NullPointerException if the given argument is {@code null}
-	 * @throws IllegalArgumentException if the given JSON does not represent a valid JSON array
+	 * Instances of this class parse a JSON representation in a single pass, reading it from a
+	 * source through a buffer, and using the next buffered character as lookahead; strings
+	 * without escape sequences are copied from the buffer as a whole.
 	 */
-	static private List<Object> parseList (final String json) throws NullPointerException, IllegalArgumentException {
-		if (json.length() < 2 | !json.startsWith("[") | !json.endsWith("]")) throw new IllegalArgumentException(json);
+	static private class Parser {
+		private final Reader source;
+		private final char[] buffer;
+		private int bufferPosition;
+		private int bufferLimit;
+		private long bufferOffset;
+
+
+		/**
+		 * Initializes a new instance.
+		 * @param source the source of the JSON representation
+		 * @param bufferSize the buffer size
+		 * @throws NullPointerException if the given source is {@code null}
+		 */
+		public Parser (final Reader source, final int bufferSize) throws NullPointerException {
+			if (source == null) throw new NullPointerException();
+
+			this.source = source;
+			this.buffer = new char[bufferSize];
+			this.bufferPosition = 0;
+			this.bufferLimit = 0;
+			this.bufferOffset = 0;
+		}
 
-		final List<Object> list = new ArrayList<>();
-		for (int index = 1; index < json.length(); ++index) {
-			while (index < json.length() && Character.isWhitespace(json.charAt(index))) index += 1;
-			if (json.charAt(index) == ']') break;
 
-			final int startIndex = index;
-			if (json.charAt(index) == '{' | json.charAt(index) == '[' | json.charAt(index) == '"' | json.charAt(index) == '\'')
-				index = matchingDelimiterPosition(json, startIndex) + 1;
-			else
-				while (index < json.length() && json.charAt(index) != ',' && json.charAt(index) != ']') index += 1;
+		/**
+		 * Returns a new exception describing a syntax error at the current position.
+		 * @return the exception
+		 */
+		public IllegalArgumentException error () {
+			return new IllegalArgumentException("invalid JSON at position " + (this.bufferOffset + this.bufferPosition));
+		}
 
-			final Object element = parse(json.substring(startIndex, index).trim());
-			list.add(element);
 
-			while (index < json.length() && Character.isWhitespace(json.charAt(index))) index += 1;
-			if (index < json.length() && json.charAt(index) != ',' && json.charAt(index) != ']') throw new IllegalArgumentException(json);
+		/**
+		 * Refills the buffer from the source if it has been consumed completely.
+		 * @return {@code true} if there is at least one unconsumed character within the buffer,
+		 * 		{@code false} if the end of the source has been reached
+		 * @throws IOException if there is an I/O related problem
+		 */
+		public boolean fill () throws IOException {
+			if (this.bufferPosition < this.bufferLimit) return true;
+
+			this.bufferOffset += this.bufferLimit;
+			this.bufferPosition = 0;
+			int charsRead;
+			do charsRead = this.source.read(this.buffer); while (charsRead == 0);
+			this.bufferLimit = Math.max(0, charsRead);
+			return charsRead > 0;
 		}
 
-		return list;
-	}
 
+		/**
+		 * Advances the current position beyond any whitespace.
+		 * @throws IOException if there is an I/O related problem
+		 */
+		public void skipWhitespace () throws IOException {
+			while (this.fill() && Character.isWhitespace(this.buffer[this.bufferPosition])) this.bufferPosition += 1;
+		}
 
-	/**
-	 * Converts the given JSON representation into the content of a newly created string.
-	 * @param json the JSON representation
-	 * @return the string
-	 * @throws NullPointerException if the given argument is {@code null}
-	 * @throws IllegalArgumentException if the given JSON does not represent a valid JSON string
-	 */
-	static private String parseString (final String json) throws NullPointerException, IllegalArgumentException {
-		if (json.length() < 2 | !((json.startsWith("\"") & json.endsWith("\"")) | (json.startsWith("'") & json.endsWith("'")))) throw new IllegalArgumentException(json);
 
-		return json.substring(1, json.length() - 1).replace("\\'", "'").replace("\\\"", "\"").replace("\\t", "\t").replace("\\n", "\n");
-	}
+		/**
+		 * Returns the character at the current position after skipping whitespace, without consuming it.
+		 * @return the character
+		 * @throws IllegalArgumentException if the end of the JSON representation has been reached
+		 * @throws IOException if there is an I/O related problem
+		 */
+		private char peek () throws IllegalArgumentException, IOException {
+			this.skipWhitespace();
+			if (!this.fill()) throw this.error();
+			return this.buffer[this.bufferPosition];
+		}
 
 
-	/**
-	 * Converts the given JSON representation into the content of a newly created numeric value.
-	 * @param json the JSON representation
-	 * @return the numeric value as {@code Double}
-	 * @throws NullPointerException if the given argument is {@code null}
-	 * @throws IllegalArgumentException if the given JSON does not represent a valid JSON number
-	 */
-	static private Double parseNumber (final String json) throws NullPointerException, IllegalArgumentException {
-		return Double.parseDouble(json);
-	}
+		/**
+		 * Consumes and returns the character at the current position.
+		 * @return the character
+		 * @throws IllegalArgumentException if the end of the JSON representation has been reached
+		 * @throws IOException if there is an I/O related problem
+		 */
+		private char next () throws IllegalArgumentException, IOException {
+			if (!this.fill()) throw this.error();
+			return this.buffer[this.bufferPosition++];
+		}
 
 
-	/**
-	 * Converts the given JSON representation into the content of a newly created boolean value.
-	 * @param json the JSON representation
-	 * @return the Boolean value
-	 * @throws NullPointerException if the given argument is {@code null}
-	 * @throws IllegalArgumentException if the given JSON does not represent a valid JSON boolean
-	 */
-	static private Boolean parseBoolean (final String json) throws NullPointerException, IllegalArgumentException {
-		if (json.equals("true")) return true;
-		if (json.equals("false")) return false;
-		throw new IllegalArgumentException(json);
-	}
+		/**
+		 * Parses the value starting at the current position.
+		 * @param depth the nesting depth
+		 * @return the value, or {@code null}
+		 * @throws IllegalArgumentException if the value is not valid JSON, or nested too deeply
+		 * @throws IOException if there is an I/O related problem
+		 */
+		public Object parseValue (final int depth) throws IllegalArgumentException, IOException {
+			if (depth > MAX_DEPTH) throw this.error();
+
+			switch (this.peek()) {
+				case '{':
+					return this.parseMap(depth);
+				case '[':
+					return this.parseList(depth);
+				case '"': case '\'':
+					return this.parseString();
+				case 't':
+					return this.parseLiteral("true", Boolean.TRUE);
+				case 'f':
+					return this.parseLiteral("false", Boolean.FALSE);
+				case 'n':
+					return this.parseLiteral("null", null);
+				case 'u':
+					return this.parseLiteral("undefined", null);
+				case 'N':
+					return this.parseLiteral("NaN", Double.NaN);
+				default:
+					return this.parseNumber();
+			}
+		}
 
 
-	/**
-	 * Converts the given JSON representation into {@code null}.
-	 * @param json the JSON representation
-	 * @return the {@code null} value
-	 * @throws NullPointerException if the given argument is {@code null}
-	 * @throws IllegalArgumentException if the given JSON does not represent a valid JSON void
-	 */
-	static private Void parseVoid (final String json) throws NullPointerException, IllegalArgumentException {
-		if (!json.equals("null") & !json.equals("undefined")) throw new IllegalArgumentException(json);
+		/**
+		 * Parses the map starting at the current position.
+		 * @param depth the nesting depth
+		 * @return the map
+		 * @throws IllegalArgumentException if the map is not valid JSON, or nested too deeply
+		 * @throws IOException if there is an I/O related problem
+		 */
+		private Map<String,Object> parseMap (final int depth) throws IllegalArgumentException, IOException {
+			final Map<String,Object> map = new LinkedHashMap<>();
+			this.bufferPosition += 1;
+
+			while (true) {
+				char character = this.peek();
+				if (character == '}') break;
+				if (character != '"' & character != '\'') throw this.error();
+				final String key = this.parseString();
+
+				if (this.peek() != ':') throw this.error();
+				this.bufferPosition += 1;
+				map.put(key, this.parseValue(depth + 1));
+
+				character = this.peek();
+				if (character == '}') break;
+				if (character != ',') throw this.error();
+				this.bufferPosition += 1;
+			}
 
-		return null;
-	}
+			this.bufferPosition += 1;
+			return map;
+		}
 
 
-	/**
-	 * Returns the position of the stop delimiter matching the start delimiter at the given position.
-	 * @param json the JSON representation
-	 * @param startPosition the start delimiter position
-	 * @return the matching stop delimiter position
-	 * @throws NullPointerException if the given JSON argument is {@code null}
-	 * @throws IllegalArgumentException if the given start position is out of range,
-	 *			or if the given JSON doesn't contain a matching stop delimiter
-	 */
-	static private int matchingDelimiterPosition (final String json, final int startPosition) throws NullPointerException, IllegalArgumentException {
-		if (startPosition < 0 | startPosition >= json.length()) throw new IllegalArgumentException(json);
-		final char startDelimiter = json.charAt(startPosition);
-
-		if (startDelimiter == '"' | startDelimiter == '\'') {
-			for (int index = startPosition + 1; index < json.length(); ++index) {
-				final char character = json.charAt(index);
-				if (character == startDelimiter & json.charAt(index - 1) != '\\') return index;
+		/**
+		 * Parses the list starting at the current position.
+		 * @param depth the nesting depth
+		 * @return the list
+		 * @throws IllegalArgumentException if the list is not valid JSON, or nested too deeply
+		 * @throws IOException if there is an I/O related problem
+		 */
+		private List<Object> parseList (final int depth) throws IllegalArgumentException, IOException {
+			final List<Object> list = new ArrayList<>();
+			this.bufferPosition += 1;
+
+			while (true) {
+				char character = this.peek();
+				if (character == ']') break;
+				list.add(this.parseValue(depth + 1));
+
+				character = this.peek();
+				if (character == ']') break;
+				if (character != ',') throw this.error();
+				this.bufferPosition += 1;
 			}
-		} else if (startDelimiter == '{' | startDelimiter == '[') {
-			for (int index = startPosition + 1; index < json.length(); ++index) {
-				final char character = json.charAt(index);
-				if ((startDelimiter == '{' & character == '}') | (startDelimiter == '[' & character == ']')) return index;
 
-				if (character == '{' | character == '[' | character == '"' | character == '\'')
-					index = matchingDelimiterPosition(json, index);
+			this.bufferPosition += 1;
+			return list;
+		}
+
+
+		/**
+		 * Parses the single- or double-quoted string starting at the current position, resolving escape sequences.
+		 * @return the string
+		 * @throws IllegalArgumentException if the string is not valid JSON
+		 * @throws IOException if there is an I/O related problem
+		 */
+		private String parseString () throws IllegalArgumentException, IOException {
+			final char delimiter = this.next();
+
+			StringBuilder builder = null;
+			while (this.fill()) {
+				final int start = this.bufferPosition;
+				int stop = start;
+				while (stop < this.bufferLimit && this.buffer[stop] != delimiter && this.buffer[stop] != '\\') stop += 1;
+
+				// fast path for strings without escape sequences, and not spanning buffer refills
+				if (builder == null && stop < this.bufferLimit && this.buffer[stop] == delimiter) {
+					this.bufferPosition = stop + 1;
+					return new String(this.buffer, start, stop - start);
+				}
+
+				if (builder == null) builder = new StringBuilder(stop - start + 16);
+				builder.append(this.buffer, start, stop - start);
+				this.bufferPosition = stop;
+				if (stop == this.bufferLimit) continue;
+
+				this.bufferPosition += 1;
+				if (this.buffer[stop] == delimiter) return builder.toString();
+
+				final char escaped = this.next();
+				switch (escaped) {
+					case 'b':
+						builder.append('\b');
+						break;
+					case 'f':
+						builder.append('\f');
+						break;
+					case 'n':
+						builder.append('\n');
+						break;
+					case 'r':
+						builder.append('\r');
+						break;
+					case 't':
+						builder.append('\t');
+						break;
+					case 'u':
+						int code = 0;
+						for (int index = 0; index < 4; ++index) {
+							final char character = this.next();
+							final int digit = character < 0x80 ? Character.digit(character, 16) : -1;
+							if (digit == -1) throw this.error();
+							code = (code << 4) | digit;
+						}
+						builder.append((char) code);
+						break;
+					default:
+						builder.append(escaped);
+						break;
+				}
 			}
+
+			throw this.error();
 		}
 
-		throw new IllegalArgumentException(json);
+
+		/**
+		 * Parses the number starting at the current position. Integral numbers within range are returned
+		 * as {@code Long} values, all others as {@code Double} values.
+		 * @return the number
+		 * @throws IllegalArgumentException if the number is not valid JSON
+		 * @throws IOException if there is an I/O related problem
+		 */
+		private Number parseNumber () throws IllegalArgumentException, IOException {
+			final StringBuilder builder = new StringBuilder(24);
+			if (this.buffer[this.bufferPosition] == '+' | this.buffer[this.bufferPosition] == '-') builder.append(this.next());
+			if (this.fill() && this.buffer[this.bufferPosition] == 'I') {
+				this.parseLiteral("Infinity", null);
+				return builder.length() > 0 && builder.charAt(0) == '-' ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+			}
+
+			boolean integral = true;
+			for (char character; this.fill(); this.bufferPosition += 1) {
+				character = this.buffer[this.bufferPosition];
+				if (character == '.' | character == 'e' | character == 'E') integral = false;
+				else if ((character < '0' | character > '9') & character != '+' & character != '-') break;
+				builder.append(character);
+			}
+
+			final String text = builder.toString();
+			try {
+				if (integral) {
+					try {
+						return Long.parseLong(text);
+					} catch (final NumberFormatException exception) {
+						// integral, but out of range or malformed
+					}
+				}
+
+				return Double.parseDouble(text);
+			} catch (final NumberFormatException exception) {
+				throw this.error();
+			}
+		}
+
+
+		/**
+		 * Parses the given literal starting at the current position.
+		 * @param literal the literal
+		 * @param value the value represented by the literal
+		 * @return the value
+		 * @throws IllegalArgumentException if the JSON does not contain the given literal at the current position
+		 * @throws IOException if there is an I/O related problem
+		 */
+		private Object parseLiteral (final String literal, final Object value) throws IllegalArgumentException, IOException {
+			for (int index = 0; index < literal.length(); ++index)
+				if (this.next() != literal.charAt(index)) throw this.error();
+
+			return value;
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,116 @@
+package edu.damago.tool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+
+/**
+ * Blob store keeping it's content within a blob column of a database table, whose rows are identified by a unique key
+ * column. Note that this store does not insert rows, it expects a row with the given key to exist when content is put.
+ * The JDBC connections are provided by a supplier, which allows sharing the connection of an active transaction.
+ */
+@Copyright(year = 2026, holders = "Sascha Baumeister")
+public class JdbcBlobStore implements BlobStore {
+	static private final String KEY_PATTERN = "[0-9a-fA-F]{4,}";
+
+	private final Supplier<Connection> connectionSupplier;
+	private final String selectStatement;
+	private final String selectSliceStatement;
+	private final String updateStatement;
+
+
+	/**
+	 * Initializes a new instance.
+	 * @param connectionSupplier the connection supplier
+	 * @param tableName the qualified table name
+	 * @param keyColumnName the key column name
+	 * @param contentColumnName the content column name
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 */
+	public JdbcBlobStore (final Supplier<Connection> connectionSupplier, final String tableName, final String keyColumnName, final String contentColumnName) throws NullPointerException {
+		if (connectionSupplier == null | tableName == null | keyColumnName == null | contentColumnName == null) throw new NullPointerException();
+
+		this.connectionSupplier = connectionSupplier;
+		this.selectStatement = "select " + contentColumnName + " from " + tableName + " where " + keyColumnName + " = ?";
+		this.selectSliceStatement = "select substring(" + contentColumnName + ", ?, ?) from " + tableName + " where " + keyColumnName + " = ?";
+		this.updateStatement = "update " + tableName + " set " + contentColumnName + " = ? where " + keyColumnName + " = ?";
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void put (final String key, final Path file) throws NullPointerException, IllegalArgumentException, IOException {
+		if (!key.matches(KEY_PATTERN)) throw new IllegalArgumentException(key);
+
+		try (PreparedStatement statement = this.connectionSupplier.get().prepareStatement(this.updateStatement)) {
+			try (InputStream source = Files.newInputStream(file)) {
+				statement.setBinaryStream(1, source, Files.size(file));
+				statement.setString(2, key);
+				if (statement.executeUpdate() == 0) throw new NoSuchFileException(key);
+			}
+		} catch (final SQLException exception) {
+			throw new IOException(exception);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void get (final String key, final OutputStream sink) throws NullPointerException, IllegalArgumentException, IOException {
+		if (!key.matches(KEY_PATTERN)) throw new IllegalArgumentException(key);
+		if (sink == null) throw new NullPointerException();
+
+		try (PreparedStatement statement = this.connectionSupplier.get().prepareStatement(this.selectStatement)) {
+			statement.setString(1, key);
+
+			try (ResultSet resultSet = statement.executeQuery()) {
+				if (!resultSet.next()) throw new NoSuchFileException(key);
+
+				try (InputStream source = resultSet.getBinaryStream(1)) {
+					if (source != null) source.transferTo(sink);
+				}
+			}
+		} catch (final SQLException exception) {
+			throw new IOException(exception);
+		}
+	}
+
+
+	/**
+	 * {@inheritDoc} The slice is cut out by the database, which avoids transferring the remaining content.
+	 */
+	public void get (final String key, final long offset, final long length, final OutputStream sink) throws NullPointerException, IllegalArgumentException, IOException {
+		if (!key.matches(KEY_PATTERN)) throw new IllegalArgumentException(key);
+		if (sink == null) throw new NullPointerException();
+		if (offset < 0 | length < 0) throw new IllegalArgumentException();
+
+		try (PreparedStatement statement = this.connectionSupplier.get().prepareStatement(this.selectSliceStatement)) {
+			statement.setLong(1, offset + 1);
+			statement.setLong(2, length);
+			statement.setString(3, key);
+
+			try (ResultSet resultSet = statement.executeQuery()) {
+				if (!resultSet.next()) throw new NoSuchFileException(key);
+
+				try (InputStream source = resultSet.getBinaryStream(1)) {
+					if (source != null) source.transferTo(sink);
+				}
+			}
+		} catch (final SQLException exception) {
+			throw new IOException(exception);
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package edu.damago.tool;
+
+import java.util.function.ToLongFunction;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+
+
+/**
+ * Facade for keyset (seek) pagination of query results. Instead of skipping a number of result rows, which forces the
+ * database to scan and discard them, clients pass the identity of the last element they received, and the next page
+ * starts right after it. Given results sorted by identity, this allows the database to seek directly into the primary
+ * key index, so every page costs the same regardless of it's depth.
+ */
+@Copyright(year = 2026, holders = "Sascha Baumeister")
+public class KeysetPagination {
+
+	/**
+	 * HTTP query parameter for the identity after which a result page starts.
+	 */
+	static public final String AFTER_IDENTITY = "after-identity";
+
+	/**
+	 * HTTP response header for the identity after which the next result page starts.
+	 */
+	static public final String NEXT_AFTER_IDENTITY = "X-Next-After-Identity";
+
+
+	/**
+	 * Prevents external instantiation.
+	 */
+	private KeysetPagination () {}
+
+
+	/**
+	 * Returns a new JSON response builder for the given result page. If the given page is full, a
+	 * "X-Next-After-Identity" header is added that contains the identity of the page's last element.
+	 * @param <T> the element type
+	 * @param page the result page, sorted by identity
+	 * @param resultSize the maximum result size, or {@code null} for none
+	 * @param identityFunction the function mapping elements to their identities
+	 * @return the response builder
+	 * @throws NullPointerException if the given page or function is {@code null}
+	 */
+	static public <T> ResponseBuilder ok (final T[] page, final Integer resultSize, final ToLongFunction<? super T> identityFunction) throws NullPointerException {
+		final ResponseBuilder builder = Response.ok(page, MediaType.APPLICATION_JSON);
+		if (resultSize != null && page.length > 0 && page.length >= resultSize)
+			builder.header(NEXT_AFTER_IDENTITY, identityFunction.applyAsLong(page[page.length - 1]));
+
+		return builder;
+	}
+}
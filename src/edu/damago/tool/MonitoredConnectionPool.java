@@ -0,0 +1,122 @@
+package edu.damago.tool;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.persistence.exceptions.ConcurrencyException;
+import org.eclipse.persistence.internal.databaseaccess.Accessor;
+import org.eclipse.persistence.sessions.server.ConnectionPool;
+import org.eclipse.persistence.sessions.server.ServerSession;
+
+
+/**
+ * EclipseLink connection pool that additionally records acquisition statistics, namely the number of acquisitions and
+ * acquisition failures, plus the total and maximum time spent waiting for connections. Together with the number of active
+ * and idle connections, these allow pools to be sized against request concurrency: a rising wait time indicates a pool that
+ * is too small, while a persistently high number of idle connections indicates one that is too large. Instances are usually
+ * installed by {@link MonitoringSessionCustomizer}.
+ */
+@Copyright(year = 2026, holders = "Sascha Baumeister")
+public class MonitoredConnectionPool extends ConnectionPool {
+	private final LongAdder acquisitionCount;
+	private final LongAdder acquisitionFailureCount;
+	private final LongAdder acquisitionWaitTime;
+	private final LongAccumulator maxAcquisitionWaitTime;
+
+
+	/**
+	 * Initializes a new instance using the configuration of the given connection pool.
+	 * @param template the connection pool whose configuration is copied
+	 * @param owner the server session owning the connection pool
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 */
+	public MonitoredConnectionPool (final ConnectionPool template, final ServerSession owner) throws NullPointerException {
+		super(template.getName(), template.getLogin(), template.getInitialNumberOfConnections(), template.getMinNumberOfConnections(), template.getMaxNumberOfConnections(), owner);
+		if (owner == null) throw new NullPointerException();
+
+		this.setWaitTimeout(template.getWaitTimeout());
+		this.acquisitionCount = new LongAdder();
+		this.acquisitionFailureCount = new LongAdder();
+		this.acquisitionWaitTime = new LongAdder();
+		this.maxAcquisitionWaitTime = new LongAccumulator(Math::max, 0);
+	}
+
+
+	/**
+	 * {@inheritDoc} Additionally records the time spent waiting for the connection, which includes the time spent
+	 * waiting for access to the pool itself, and whether or not the acquisition failed.
+	 */
+	@Override
+	public Accessor acquireConnection () throws ConcurrencyException {
+		final long start = System.nanoTime();
+		try {
+			return super.acquireConnection();
+		} catch (final RuntimeException exception) {
+			this.acquisitionFailureCount.increment();
+			throw exception;
+		} finally {
+			final long waitTime = System.nanoTime() - start;
+			this.acquisitionCount.increment();
+			this.acquisitionWaitTime.add(waitTime);
+			this.maxAcquisitionWaitTime.accumulate(waitTime);
+		}
+	}
+
+
+	/**
+	 * Returns the number of connections currently in use.
+	 * @return the active connection count
+	 */
+	public int getActiveConnectionCount () {
+		return this.getConnectionsUsed().size();
+	}
+
+
+	/**
+	 * Returns the number of connections currently available for use.
+	 * @return the idle connection count
+	 */
+	public int getIdleConnectionCount () {
+		return this.getConnectionsAvailable().size();
+	}
+
+
+	/**
+	 * Returns the number of connection acquisitions, including failed ones.
+	 * @return the acquisition count
+	 */
+	public long getAcquisitionCount () {
+		return this.acquisitionCount.sum();
+	}
+
+
+	/**
+	 * Returns the number of failed connection acquisitions, for example because the wait timeout elapsed.
+	 * @return the acquisition failure count
+	 */
+	public long getAcquisitionFailureCount () {
+		return this.acquisitionFailureCount.sum();
+	}
+
+
+	/**
+	 * Returns the total time spent waiting for connections.
+	 * @param unit the time unit
+	 * @return the total acquisition wait time in the given unit
+	 * @throws NullPointerException if the given argument is {@code null}
+	 */
+	public long getAcquisitionWaitTime (final TimeUnit unit) throws NullPointerException {
+		return unit.convert(this.acquisitionWaitTime.sum(), TimeUnit.NANOSECONDS);
+	}
+
+
+	/**
+	 * Returns the maximum time spent waiting for a single connection.
+	 * @param unit the time unit
+	 * @return the maximum acquisition wait time in the given unit
+	 * @throws NullPointerException if the given argument is {@code null}
+	 */
+	public long getMaxAcquisitionWaitTime (final TimeUnit unit) throws NullPointerException {
+		return unit.convert(this.maxAcquisitionWaitTime.get(), TimeUnit.NANOSECONDS);
+	}
+}
@@ -0,0 +1,44 @@
+package edu.damago.tool;
+
+import java.util.ArrayList;
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.sessions.DatabaseLogin;
+import org.eclipse.persistence.sessions.Session;
+import org.eclipse.persistence.sessions.server.ConnectionPool;
+import org.eclipse.persistence.sessions.server.ServerSession;
+
+
+/**
+ * EclipseLink session customizer that replaces the internal connection pools configured for a persistence unit with
+ * {@link MonitoredConnectionPool} instances, retaining their configuration. Additionally, pooled connections are validated
+ * using the {@value #PING_SQL} statement whenever a statement fails, which allows stale connections to be discarded instead
+ * of failing subsequent requests, and a {@link CacheStatisticsProfiler} is installed unless another profiler has been configured
+ * already. Register it using the persistence unit property {@code eclipselink.session.customizer}.
+ */
+@Copyright(year = 2026, holders = "Sascha Baumeister")
+public class MonitoringSessionCustomizer implements SessionCustomizer {
+	static private final String PING_SQL = "SELECT 1";
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void customize (final Session session) {
+		if (!(session instanceof ServerSession)) return;
+		final ServerSession serverSession = (ServerSession) session;
+
+		if (serverSession.getDatasourceLogin() instanceof DatabaseLogin) {
+			final DatabaseLogin login = (DatabaseLogin) serverSession.getDatasourceLogin();
+			login.setConnectionHealthValidatedOnError(true);
+			login.setPingSQL(PING_SQL);
+		}
+
+		for (final ConnectionPool pool : new ArrayList<>(serverSession.getConnectionPools().values()))
+			if (pool.getClass() == ConnectionPool.class) serverSession.addConnectionPool(new MonitoredConnectionPool(pool, serverSession));
+
+		final ConnectionPool readPool = serverSession.getReadConnectionPool();
+		if (readPool != null && readPool.getClass() == ConnectionPool.class) serverSession.setReadConnectionPool(new MonitoredConnectionPool(readPool, serverSession));
+
+		if (serverSession.getProfiler() == null) serverSession.setProfiler(new CacheStatisticsProfiler());
+	}
+}
@@ -0,0 +1,147 @@
+package edu.damago.tool;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+
+
+/**
+ * Builder for JPQL queries whose where clause is composed of the predicates actually supplied. Encoding every optional
+ * filter as {@code (:x is null or ...)} forces the database optimizer to plan for all branches, which in turn defeats index
+ * usage. Instead, this builder only adds a predicate if it's parameter value is present. Each combination of present
+ * predicates is compiled once, and then registered as a named query with the entity manager factory; subsequent queries
+ * with the same combination reuse said named query. Note that the combination key is derived from the sequence of
+ * {@link #where} calls, which must therefore not vary between invocations using the same query name.
+ * @param <T> the result type
+ */
+@Copyright(year = 2026, holders = "Sascha Baumeister")
+public class QueryBuilder<T> {
+	static private final int MAX_PREDICATE_COUNT = Long.SIZE;
+	static private final Map<EntityManagerFactory,Set<String>> REGISTERED_QUERY_NAMES = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private final String queryName;
+	private final Class<T> resultClass;
+	private final String selectClause;
+	private final String orderClause;
+	private final List<String> predicates;
+	private final Map<String,Object> parameters;
+	private final List<Map.Entry<String,Object>> hints;
+	private int predicateCount;
+	private long predicateMask;
+
+
+	/**
+	 * Initializes a new instance.
+	 * @param queryName the query name, used as prefix for the names of the compiled queries
+	 * @param resultClass the result class
+	 * @param selectClause the select and from clauses
+	 * @param orderClause the order by clause, or {@code null} for none
+	 * @throws NullPointerException if any of the given arguments except the order clause is {@code null}
+	 */
+	public QueryBuilder (final String queryName, final Class<T> resultClass, final String selectClause, final String orderClause) throws NullPointerException {
+		if (queryName == null | resultClass == null | selectClause == null) throw new NullPointerException();
+
+		this.queryName = queryName;
+		this.resultClass = resultClass;
+		this.selectClause = selectClause;
+		this.orderClause = orderClause;
+		this.predicates = new ArrayList<>();
+		this.parameters = new LinkedHashMap<>();
+		this.hints = new ArrayList<>();
+	}
+
+
+	/**
+	 * Adds the given predicate to the where clause if the given parameter value is not {@code null}.
+	 * @param predicate the predicate, referencing the given parameter
+	 * @param parameterName the parameter name
+	 * @param parameterValue the parameter value, or {@code null} for none
+	 * @return this builder
+	 * @throws NullPointerException if any of the given arguments except the parameter value is {@code null}
+	 * @throws IllegalStateException if too many predicates are specified
+	 */
+	public QueryBuilder<T> where (final String predicate, final String parameterName, final Object parameterValue) throws NullPointerException, IllegalStateException {
+		if (predicate == null | parameterName == null) throw new NullPointerException();
+		if (this.predicateCount == MAX_PREDICATE_COUNT) throw new IllegalStateException();
+
+		if (parameterValue != null) {
+			this.predicates.add(predicate);
+			this.parameters.put(parameterName, parameterValue);
+			this.predicateMask |= 1L << this.predicateCount;
+		}
+
+		this.predicateCount += 1;
+		return this;
+	}
+
+
+	/**
+	 * Adds the given query hint, which becomes part of the compiled query.
+	 * @param name the hint name
+	 * @param value the hint value
+	 * @return this builder
+	 * @throws NullPointerException if any of the given arguments is {@code null}
+	 */
+	public QueryBuilder<T> hint (final String name, final Object value) throws NullPointerException {
+		if (name == null | value == null) throw new NullPointerException();
+
+		this.hints.add(new SimpleImmutableEntry<>(name, value));
+		return this;
+	}
+
+
+	/**
+	 * Returns the JPQL text of the query, consisting of the select clause, the present predicates, and the order clause.
+	 * @return the query text
+	 */
+	public String queryText () {
+		final StringBuilder builder = new StringBuilder(this.selectClause);
+		if (!this.predicates.isEmpty()) builder.append(" where ").append(String.join(" and ", this.predicates));
+		if (this.orderClause != null) builder.append(' ').append(this.orderClause);
+		return builder.toString();
+	}
+
+
+	/**
+	 * Returns a new query for the given entity manager, with all present parameters set. The compiled query is looked
+	 * up by it's name, and if it has not been registered yet it is compiled and registered with the entity manager factory
+	 * beforehand. The registered names are tracked per entity manager factory, which avoids probing for missing named
+	 * queries using exceptions. The query name is composed of this builder's query name, the combination of present
+	 * predicates, and the hints, which prevents builders using the same query name but different hints from sharing
+	 * a compiled query.
+	 * @param entityManager the entity manager
+	 * @return the query
+	 * @throws NullPointerException if the given argument is {@code null}
+	 * @throws IllegalArgumentException if the query text is invalid
+	 */
+	public TypedQuery<T> build (final EntityManager entityManager) throws NullPointerException, IllegalArgumentException {
+		final String name = this.queryName + '#' + Long.toHexString(this.predicateMask) + (this.hints.isEmpty() ? "" : "#" + this.hints);
+		final EntityManagerFactory entityManagerFactory = entityManager.getEntityManagerFactory();
+		final Set<String> registeredQueryNames = REGISTERED_QUERY_NAMES.computeIfAbsent(entityManagerFactory, key -> ConcurrentHashMap.newKeySet());
+
+		if (!registeredQueryNames.contains(name)) {
+			final TypedQuery<T> template = entityManager.createQuery(this.queryText(), this.resultClass);
+			for (final Map.Entry<String,Object> hint : this.hints)
+				template.setHint(hint.getKey(), hint.getValue());
+
+			entityManagerFactory.addNamedQuery(name, template);
+			registeredQueryNames.add(name);
+		}
+
+		final TypedQuery<T> query = entityManager.createNamedQuery(name, this.resultClass);
+
+		for (final Map.Entry<String,Object> parameter : this.parameters.entrySet())
+			query.setParameter(parameter.getKey(), parameter.getValue());
+
+		return query;
+	}
+}
@@ -0,0 +1,27 @@
+package edu.damago.tool;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Marks JAX-RS resource methods or classes as read-only or not, overriding the default derived from the HTTP method; see
+ * {@link RestJpaLifecycleProvider} for details. Annotations on resource methods take precedence over those on resource
+ * classes.
+ */
+@Documented
+@Inherited
+@Target({ ElementType.METHOD, ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+@Copyright(year = 2026, holders = "Sascha Baumeister")
+public @interface ReadOnly {
+
+	/**
+	 * Whether or not the annotated resource methods are read-only.
+	 */
+	boolean value() default true;
+}
@@ -2,9 +2,14 @@ package edu.damago.tool;
 
 import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.util.Collections;
+import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Priority;
@@ -12,36 +17,56 @@ import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
 import javax.persistence.PersistenceException;
+import javax.ws.rs.HttpMethod;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
 import javax.ws.rs.container.ContainerResponseContext;
 import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.ext.Provider;
 
 
 /**
  * This lifecycle provider deploys the following services for a given JPA persistence unit:
  * <ul>
- * <li><b>Entity manager life-cycle management</b>: Entity managers for this provider's persistence unit are created upon the
- * begin of any HTTP request, and closed upon it's end. This implies that the entity managers are active during entity
- * marshaling, ready to supply additional information.</li>
+ * <li><b>Entity manager life-cycle management</b>: Entity managers for this provider's persistence unit are created lazily
+ * upon first use during any HTTP request, and closed upon it's end. This implies that the entity managers are active during
+ * entity marshaling, ready to supply additional information, while requests that never access the database - like those
+ * rejected during authentication, or those answered from client caches - avoid setting up a persistence context at all.</li>
  * <li><b>Request-scoped transaction demarcation</b>: Additionally, the design allows for continuous transaction coverage,
- * similar to JDBC. The idea is that a transaction is started automatically upon request begin, and at it's end the last active
- * transaction is automatically rolled back. Services should immediately start a new transaction after committing an existing
- * one.</li>
+ * similar to JDBC. The idea is that a transaction is started automatically upon entity manager creation, and at request end
+ * the last active transaction is automatically committed. Services should immediately start a new transaction after
+ * committing an existing one.</li>
+ * <li><b>Read-only requests</b>: Requests using the safe HTTP methods GET, HEAD and OPTIONS are considered read-only, and are
+ * processed without beginning a transaction; this default can be overridden for individual resource methods or classes using
+ * the {@link ReadOnly} annotation. Without a transaction, the persistence provider acquires a pooled connection per query and
+ * releases it right afterwards, instead of pinning a connection for the whole request including response marshaling. Services
+ * processing read-only requests that need to write nevertheless must begin, and commit, a transaction of their own.</li>
  * </ul>
- * Note that the use of a thread local variable for entity manager injection is based on the precondition that any HTTP request
- * is processed within a single thread. This assumption does hold in standard compatible environments, like Jersey.
+ * The persistence related state of each request is kept within a request scope, which is stored as a property of the JAX-RS
+ * request context, and additionally bound to the thread processing the request; the latter allows services to look up their
+ * entity manager using {@link #entityManager(String)}. Requests processed by more than one thread, for example using
+ * {@code AsyncResponse} or {@code CompletableFuture} continuations, must explicitly propagate the request scope to said threads
+ * by wrapping their tasks using {@link #propagate(Runnable)} or {@link #propagate(Supplier)}, or by executing them using
+ * {@link #propagating(Executor)}; as entity managers are not thread-safe, the tasks must not run concurrently though. Closing
+ * the request scope relies solely on the request context, and therefore works regardless of the thread writing the response.
  */
 @Provider
 @Priority(100)
 @Copyright(year = 2013, holders = "Sascha Baumeister")
 public class RestJpaLifecycleProvider implements ContainerRequestFilter, ContainerResponseFilter {
-	static private final Map<String,RestJpaLifecycleProvider> INSTANCES = Collections.synchronizedMap(new HashMap<>());
+	static private final Map<String,RestJpaLifecycleProvider> INSTANCES = new ConcurrentHashMap<>();
 
 	private final String persistenceUnitName;
+	private final String requestScopeProperty;
 	private final EntityManagerFactory entityManagerFactory;
-	private final ThreadLocal<EntityManager> entityManagerReference;
+	private final ThreadLocal<RequestScope> requestScopeReference;
+	private final LongAdder requestCount;
+	private final LongAdder skippedSetupCount;
+
+	@Context
+	private ResourceInfo resourceInfo;
 
 
 	/**
@@ -55,12 +80,7 @@ public class RestJpaLifecycleProvider implements ContainerRequestFilter, Contain
 	static public RestJpaLifecycleProvider open (final String persistenceUnitName) throws NullPointerException, PersistenceException {
 		if (persistenceUnitName == null) throw new NullPointerException();
 
-		RestJpaLifecycleProvider provider;
-		synchronized (INSTANCES) {
-			provider = INSTANCES.get(persistenceUnitName);
-			if (provider == null)
-				INSTANCES.put(persistenceUnitName, provider = new RestJpaLifecycleProvider(persistenceUnitName));
-		}
+		final RestJpaLifecycleProvider provider = INSTANCES.computeIfAbsent(persistenceUnitName, RestJpaLifecycleProvider::new);
 
 		Logger.getGlobal().log(Level.INFO, "JPA lifecycle provider associated with persistence unit \"{0}\".", persistenceUnitName);
 		return provider;
@@ -83,22 +103,104 @@ public class RestJpaLifecycleProvider implements ContainerRequestFilter, Contain
 
 
 	/**
-	 * Returns the entity manager associated with both the current thread and the given persistence unit.
+	 * Returns a task that executes the given one with the request scopes of all lifecycle providers bound to the executing
+	 * thread, as they are bound to the current thread at the time of this call.
+	 * @param task the task
+	 * @return the propagating task
+	 * @throws NullPointerException if the given argument is {@code null}
+	 */
+	static public Runnable propagate (final Runnable task) throws NullPointerException {
+		if (task == null) throw new NullPointerException();
+
+		final Supplier<Object> supplier = propagate(() -> {
+			task.run();
+			return null;
+		});
+		return supplier::get;
+	}
+
+
+	/**
+	 * Returns a supplier that executes the given one with the request scopes of all lifecycle providers bound to the executing
+	 * thread, as they are bound to the current thread at the time of this call.
+	 * @param <T> the result type
+	 * @param task the supplier
+	 * @return the propagating supplier
+	 * @throws NullPointerException if the given argument is {@code null}
+	 */
+	static public <T> Supplier<T> propagate (final Supplier<T> task) throws NullPointerException {
+		if (task == null) throw new NullPointerException();
+
+		final Map<RestJpaLifecycleProvider,RequestScope> requestScopes = new HashMap<>();
+		for (final RestJpaLifecycleProvider provider : INSTANCES.values()) {
+			final RequestScope requestScope = provider.requestScopeReference.get();
+			if (requestScope != null) requestScopes.put(provider, requestScope);
+		}
+
+		return () -> {
+			final Map<RestJpaLifecycleProvider,RequestScope> previousRequestScopes = new HashMap<>();
+			for (final Map.Entry<RestJpaLifecycleProvider,RequestScope> entry : requestScopes.entrySet()) {
+				previousRequestScopes.put(entry.getKey(), entry.getKey().requestScopeReference.get());
+				entry.getKey().requestScopeReference.set(entry.getValue());
+			}
+
+			try {
+				return task.get();
+			} finally {
+				for (final Map.Entry<RestJpaLifecycleProvider,RequestScope> entry : previousRequestScopes.entrySet()) {
+					if (entry.getValue() == null) entry.getKey().requestScopeReference.remove();
+					else entry.getKey().requestScopeReference.set(entry.getValue());
+				}
+			}
+		};
+	}
+
+
+	/**
+	 * Returns an executor that propagates the request scopes bound to the thread submitting a task to the thread executing it,
+	 * see {@link #propagate(Runnable)}. This allows for example {@code CompletableFuture.supplyAsync(task, propagating(executor))},
+	 * with the given executor being a virtual thread executor if available.
+	 * @param executor the executor
+	 * @return the propagating executor
+	 * @throws NullPointerException if the given argument is {@code null}
+	 */
+	static public Executor propagating (final Executor executor) throws NullPointerException {
+		if (executor == null) throw new NullPointerException();
+
+		return task -> executor.execute(propagate(task));
+	}
+
+
+	/**
+	 * Returns the lifecycle provider associated with the given persistence unit.
 	 * @param persistenceUnitName the persistence unit name
-	 * @return the entity manager
+	 * @return the lifecycle provider
 	 * @throws NullPointerException if the given argument is {@code null}
 	 * @throws IllegalArgumentException if there is no lifecycle provider associated with the given persistence unit
-	 * @throws IllegalStateException if there is no entity manager associated with the current thread
 	 */
-	static public EntityManager entityManager (final String persistenceUnitName) throws NullPointerException, IllegalArgumentException, IllegalStateException {
-		if (persistenceUnitName == null) throw new NullPointerException();
-
+	static public RestJpaLifecycleProvider provider (final String persistenceUnitName) throws NullPointerException, IllegalArgumentException {
 		final RestJpaLifecycleProvider provider = INSTANCES.get(persistenceUnitName);
 		if (provider == null) {
 			Logger.getGlobal().log(Level.SEVERE, "No lifecycle provider associated with persistence unit \"{0}\", check if provider is actually configured!", persistenceUnitName);
 			throw new IllegalArgumentException();
 		}
 
+		return provider;
+	}
+
+
+	/**
+	 * Returns the entity manager associated with both the current thread and the given persistence unit.
+	 * @param persistenceUnitName the persistence unit name
+	 * @return the entity manager
+	 * @throws NullPointerException if the given argument is {@code null}
+	 * @throws IllegalArgumentException if there is no lifecycle provider associated with the given persistence unit
+	 * @throws IllegalStateException if there is no entity manager associated with the current thread
+	 */
+	static public EntityManager entityManager (final String persistenceUnitName) throws NullPointerException, IllegalArgumentException, IllegalStateException {
+		if (persistenceUnitName == null) throw new NullPointerException();
+
+		final RestJpaLifecycleProvider provider = provider(persistenceUnitName);
 		final EntityManager entityManager = provider.getEntityManager();
 		if (entityManager == null) {
 			Logger.getGlobal().log(Level.SEVERE, "No entity manager associated with persistence unit \"{0}\" within the current thread, ensure that this call originated from handling an actual HTTP request, and that the server fires proper HTTP events!", persistenceUnitName);
@@ -120,8 +222,11 @@ public class RestJpaLifecycleProvider implements ContainerRequestFilter, Contain
 		if (persistenceUnitName == null) throw new NullPointerException();
 
 		this.persistenceUnitName = persistenceUnitName;
+		this.requestScopeProperty = RestJpaLifecycleProvider.class.getName() + ".scope:" + persistenceUnitName;
 		this.entityManagerFactory = Persistence.createEntityManagerFactory(persistenceUnitName);
-		this.entityManagerReference = new ThreadLocal<>();
+		this.requestScopeReference = new ThreadLocal<>();
+		this.requestCount = new LongAdder();
+		this.skippedSetupCount = new LongAdder();
 	}
 
 
@@ -144,39 +249,92 @@ public class RestJpaLifecycleProvider implements ContainerRequestFilter, Contain
 
 
 	/**
-	 * Returns the entity manager.
+	 * Returns the number of completed requests.
+	 * @return the request count
+	 */
+	public long getRequestCount () {
+		return this.requestCount.sum();
+	}
+
+
+	/**
+	 * Returns the number of completed requests that avoided persistence context setup entirely,
+	 * because they never required an entity manager.
+	 * @return the skipped setup count
+	 */
+	public long getSkippedSetupCount () {
+		return this.skippedSetupCount.sum();
+	}
+
+
+	/**
+	 * Returns the entity manager, creating it first if this is the first access during the current request.
 	 * @return the entity manager associated with the current thread, or {@code null} for none
+	 * @throws PersistenceException if the entity manager cannot be created
 	 */
-	public EntityManager getEntityManager () {
-		return this.entityManagerReference.get();
+	public EntityManager getEntityManager () throws PersistenceException {
+		final RequestScope requestScope = this.requestScopeReference.get();
+		return requestScope == null ? null : requestScope.getEntityManager(this.entityManagerFactory);
 	}
 
 
 	/**
-	 * This operation is called by the JAX-RS runtime before an HTTP request is processed withing the current thread. It creates
-	 * a new entity manager instance using this provider's entity manager factory, and stores it within the thread local
-	 * reference associated with this provider's persistence unit name.
+	 * This operation is called by the JAX-RS runtime before an HTTP request is processed withing the current thread. It stores
+	 * a new request scope within the given request context, and binds it to the current thread; the request scope allows an
+	 * entity manager to be created upon first use, and unless the request is read-only, a transaction is begun at that time as
+	 * well. Note that binding the request scope replaces any stale binding left over by requests processed asynchronously;
+	 * such bindings cannot be removed once the resource method returns, as the entity stream may still require them while
+	 * being written, but they no longer retain an entity manager once their request scope has been closed.
 	 * @param requestContext the (optional) JAX-RS request context
 	 */
 	public void filter (final ContainerRequestContext requestContext) {
-		final EntityManager entityManager = this.entityManagerFactory.createEntityManager();
-		entityManager.getTransaction().begin();
-		this.entityManagerReference.set(entityManager);
+		final RequestScope requestScope = new RequestScope(this.isReadOnly(requestContext));
+		if (requestContext != null) requestContext.setProperty(this.requestScopeProperty, requestScope);
+		this.requestScopeReference.set(requestScope);
+	}
+
+
+	/**
+	 * Returns whether or not the given request is read-only, based on the {@link ReadOnly} annotation of the matched resource
+	 * method or class, or otherwise on the request's HTTP method.
+	 * @param requestContext the (optional) JAX-RS request context
+	 * @return {@code true} if the request is read-only, {@code false} otherwise
+	 */
+	private boolean isReadOnly (final ContainerRequestContext requestContext) {
+		final Method resourceMethod = this.resourceInfo == null ? null : this.resourceInfo.getResourceMethod();
+		if (resourceMethod != null) {
+			final ReadOnly annotation = resourceMethod.isAnnotationPresent(ReadOnly.class)
+				? resourceMethod.getAnnotation(ReadOnly.class)
+				: this.resourceInfo.getResourceClass().getAnnotation(ReadOnly.class);
+			if (annotation != null) return annotation.value();
+		}
+
+		if (requestContext == null) return false;
+		switch (requestContext.getMethod()) {
+			case HttpMethod.GET:
+			case HttpMethod.HEAD:
+			case HttpMethod.OPTIONS:
+				return true;
+			default:
+				return false;
+		}
 	}
 
 
 	/**
 	 * This operation is called by the JAX-RS runtime after an HTTP request has been processed, but before the entity stream has
 	 * been written. It decorates the response context's entity stream, causing said decorator to trigger once the entity stream
-	 * has been written. This in turn allows this operation to close and remove the entity manager associated with both the
-	 * current thread and this provider's persistence unit. Note that this technology relies on the entity stream (rather, the
-	 * decorator wrapping it) to be closed regardless of the presence of absence of a response entity; in other words, the
-	 * operation relies heavily on correct resource management by the JAX-RS implementation.
+	 * has been written. This in turn allows this operation to close the request scope stored within the request context, and
+	 * with it the entity manager associated with this provider's persistence unit, regardless of the thread processing the
+	 * response. Note that this technology relies on the entity stream (rather, the decorator wrapping it) to be closed
+	 * regardless of the presence of absence of a response entity; in other words, the operation relies heavily on correct
+	 * resource management by the JAX-RS implementation.
 	 * @param requestContext the JAX-RS request context
 	 * @param responseContext the JAX-RS response context
 	 * @throws NullPointerException if any of the given arguments is {@code null}
 	 */
 	public void filter (final ContainerRequestContext requestContext, final ContainerResponseContext responseContext) throws NullPointerException {
+		final RequestScope requestScope = (RequestScope) requestContext.getProperty(this.requestScopeProperty);
 		final FilterOutputStream triggerStream = new FilterOutputStream(responseContext.getEntityStream()) {
 
 			/**
@@ -186,7 +344,7 @@ public class RestJpaLifecycleProvider implements ContainerRequestFilter, Contain
 				try {
 					super.close();
 				} finally {
-					RestJpaLifecycleProvider.this.closeEntityManager();
+					RestJpaLifecycleProvider.this.closeRequestScope(requestScope);
 				}
 			}
 		};
@@ -195,12 +353,18 @@ public class RestJpaLifecycleProvider implements ContainerRequestFilter, Contain
 
 
 	/**
-	 * Commits an active transaction, and closes the entity manager associated with both
-	 * the current thread and this provider's persistence unit.
+	 * Closes the given request scope, which commits an active transaction, and closes the entity manager associated with both
+	 * said scope and this provider's persistence unit, if one has been created. Additionally unbinds the request scope from the
+	 * current thread, if it is bound to it.
+	 * @param requestScope the request scope, or {@code null} for none
 	 */
-	private void closeEntityManager () {
-		final EntityManager entityManager = this.entityManagerReference.get();
-		this.entityManagerReference.remove();
+	private void closeRequestScope (final RequestScope requestScope) {
+		if (requestScope == null) return;
+		if (this.requestScopeReference.get() == requestScope) this.requestScopeReference.remove();
+
+		final EntityManager entityManager = requestScope.close();
+		this.requestCount.increment();
+		if (entityManager == null) this.skippedSetupCount.increment();
 
 		if (entityManager != null && entityManager.isOpen()) {
 			try {
@@ -210,4 +374,69 @@ public class RestJpaLifecycleProvider implements ContainerRequestFilter, Contain
 			}
 		}
 	}
-}
\ No newline at end of file
+
+
+
+	/**
+	 * Instances of this class represent the persistence related state of a request. The entity manager is created lazily
+	 * upon first use, which may happen within any thread the request scope has been propagated to; creation races are
+	 * resolved without locking, with the losing entity manager being discarded.
+	 */
+	static private class RequestScope {
+		private final boolean readOnly;
+		private final AtomicReference<EntityManager> entityManagerReference;
+		private volatile boolean closed;
+
+
+		/**
+		 * Initializes a new instance.
+		 * @param readOnly whether or not the request is read-only
+		 */
+		public RequestScope (final boolean readOnly) {
+			this.readOnly = readOnly;
+			this.entityManagerReference = new AtomicReference<>();
+		}
+
+
+		/**
+		 * Returns the entity manager, creating it first using the given factory if this is it's first use. Unless the
+		 * request is read-only, a transaction is begun upon creation.
+		 * @param entityManagerFactory the entity manager factory
+		 * @return the entity manager
+		 * @throws IllegalStateException if this request scope has already been closed
+		 * @throws PersistenceException if the entity manager cannot be created
+		 */
+		public EntityManager getEntityManager (final EntityManagerFactory entityManagerFactory) throws IllegalStateException, PersistenceException {
+			final EntityManager entityManager = this.entityManagerReference.get();
+			if (entityManager != null) return entityManager;
+			if (this.closed) throw new IllegalStateException();
+
+			final EntityManager newEntityManager = entityManagerFactory.createEntityManager();
+			if (!this.readOnly) newEntityManager.getTransaction().begin();
+			if (this.entityManagerReference.compareAndSet(null, newEntityManager)) {
+				if (!this.closed) return newEntityManager;
+
+				// closed concurrently; unless closing has claimed the new entity manager for disposal, it must be discarded here
+				if (!this.entityManagerReference.compareAndSet(newEntityManager, null)) throw new IllegalStateException();
+			}
+
+			if (newEntityManager.getTransaction().isActive()) newEntityManager.getTransaction().rollback();
+			newEntityManager.close();
+
+			final EntityManager winningEntityManager = this.entityManagerReference.get();
+			if (winningEntityManager == null) throw new IllegalStateException();
+			return winningEntityManager;
+		}
+
+
+		/**
+		 * Closes this request scope, and returns it's entity manager for disposal. The entity manager is released by this
+		 * request scope, as the latter may remain bound to a thread that processed the request asynchronously.
+		 * @return the entity manager, or {@code null} if none has been created
+		 */
+		public EntityManager close () {
+			this.closed = true;
+			return this.entityManagerReference.getAndSet(null);
+		}
+	}
+}